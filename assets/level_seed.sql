@@ -0,0 +1,8 @@
+CREATE TABLE level (
+	id INTEGER PRIMARY KEY,
+	level_number INTEGER NOT NULL,
+	points text NOT NULL
+);
+
+INSERT INTO level (level_number, points) VALUES (1,
+	'1.0f 1.0f 0.0f,-0.0f -0.0f 0.0f,-1.0f -1.0f 0.0f,-2.0f -1.0f 0.0f,-2.5f -0.5f 0.0f,-50f -50f 0.0f');
@@ -0,0 +1,32 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks for the per-frame code paths, with the GC profiler
+ * attached so each result comes with an allocation rate (gc.alloc.rate.norm is
+ * bytes allocated per operation).
+ * 
+ * The benchmarks only need the Android-free classes from src (core, objects,
+ * physics and the simulation classes in game) plus jmh-core, with
+ * jmh-generator-annprocess as the annotation processor when compiling.
+ * 
+ * Usage: BenchmarkMain [regex of benchmarks to run]
+ */
+public class BenchmarkMain {
+	
+	public static void main(String[] args) throws RunnerException {
+		String include = (args.length > 0) ? args[0] : "benchmarks\\..*Benchmark.*";
+		
+		Options options = new OptionsBuilder()
+				.include(include)
+				.addProfiler(GCProfiler.class)
+				.build();
+		
+		new Runner(options).run();
+	}
+}
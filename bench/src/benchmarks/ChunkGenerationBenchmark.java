@@ -0,0 +1,59 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import game.ChunkedGroundGenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Seeded terrain generation, in chunks per second: walking forward through
+ * the world as a run does, and jumping to arbitrary chunks as regenerating
+ * evicted ground would.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ChunkGenerationBenchmark {
+	
+	private static final long SEED = 42;
+	//Keeps x where floats still have plenty of precision
+	private static final long CHUNK_INDEX_MASK = 0x3FFF;
+	
+	private ChunkedGroundGenerator generator;
+	private float[] chunkCoords;
+	private long nextChunk;
+	private long randomChunk;
+	
+	@Setup
+	public void setUp() {
+		generator = new ChunkedGroundGenerator(SEED);
+		chunkCoords = new float[ChunkedGroundGenerator.MAX_POINTS_PER_CHUNK * 3];
+	}
+	
+	@Benchmark
+	public float[] sequentialChunks() {
+		generator.generateChunk(nextChunk++ & CHUNK_INDEX_MASK, chunkCoords);
+		return chunkCoords;
+	}
+	
+	@Benchmark
+	public float[] randomAccessChunks() {
+		//LCG step, so the chunk index sequence has no locality
+		randomChunk = randomChunk * 6364136223846793005L + 1442695040888963407L;
+		generator.generateChunk((randomChunk >>> 40) & CHUNK_INDEX_MASK, chunkCoords);
+		return chunkCoords;
+	}
+}
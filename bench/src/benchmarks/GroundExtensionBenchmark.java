@@ -0,0 +1,69 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import game.GroundGenerator;
+import objects.Ground;
+import objects.Pointf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Extending the course: generating the next stretch of ground, and appending
+ * it to a Ground that is already at steady state (evicting as it goes).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GroundExtensionBenchmark {
+	
+	private GroundGenerator generator;
+	private Ground ground;
+	private List<Pointf> nextPoints;
+	private Pointf playerPosition;
+	private float pointsLength;
+	
+	@Setup
+	public void setUp() {
+		generator = new GroundGenerator();
+		ground = generator.generateGround(new Pointf(0, 0, 0));
+		playerPosition = new Pointf(0, 0);
+		
+		nextPoints = generator.generateGroundPoints(ground.getLastPoint());
+		nextPoints.remove(0);	//Repeat of the start point
+		pointsLength = nextPoints.get(nextPoints.size() - 1).x - ground.getLastPointX();
+	}
+	
+	@Benchmark
+	public List<Pointf> generateGroundPoints() {
+		return generator.generateGroundPoints(ground.getLastPoint());
+	}
+	
+	/**
+	 * Appends the same shape of ground over and over, shifted along so x keeps
+	 * increasing, with the player following so old points get evicted.
+	 */
+	@Benchmark
+	public Ground addPoints() {
+		for (int i = 0; i < nextPoints.size(); i++) {
+			nextPoints.get(i).x += pointsLength;
+		}
+		playerPosition.x += pointsLength;
+		
+		ground.addPoints(nextPoints, playerPosition);
+		return ground;
+	}
+}
@@ -0,0 +1,103 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import objects.Ground;
+import objects.Pointf;
+import objects.Vectorf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ground height and normal queries against grounds of increasing length.
+ * Cost should stay flat as pointCount grows.
+ * 
+ * The coherent variants move a small step along the ground per call, as the
+ * player does from frame to frame. The random variants jump anywhere, which
+ * forces the binary search.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GroundLookupBenchmark {
+	
+	private static final int RANDOM_XS = 4096;
+	private static final float COHERENT_STEP = 0.05f;
+	
+	@Param({"100", "1000", "10000", "100000", "500000"})
+	public int pointCount;
+	
+	private Ground ground;
+	private float maxX;
+	private float[] randomXs;
+	private int nextRandom;
+	private float coherentX;
+	private final Vectorf normal = new Vectorf();
+	
+	@Setup
+	public void setUp() {
+		Random rand = new Random(42);
+		List<Pointf> points = new ArrayList<Pointf>(pointCount);
+		float x = 0;
+		for (int i = 0; i < pointCount; i++) {
+			points.add(new Pointf(x, rand.nextFloat() * 4 - 2, 0));
+			x += 0.5f + rand.nextFloat() * 5;
+		}
+		ground = new Ground(points, pointCount);
+		maxX = ground.getLastPointX();
+		
+		randomXs = new float[RANDOM_XS];
+		for (int i = 0; i < RANDOM_XS; i++) {
+			randomXs[i] = rand.nextFloat() * maxX;
+		}
+	}
+	
+	private float nextCoherentX() {
+		coherentX += COHERENT_STEP;
+		if (coherentX > maxX) {
+			coherentX = 0;
+		}
+		return coherentX;
+	}
+	
+	private float nextRandomX() {
+		nextRandom = (nextRandom + 1) & (RANDOM_XS - 1);
+		return randomXs[nextRandom];
+	}
+	
+	@Benchmark
+	public float yPositionCoherent() {
+		return ground.getYPositionAt(nextCoherentX());
+	}
+	
+	@Benchmark
+	public float yPositionRandom() {
+		return ground.getYPositionAt(nextRandomX());
+	}
+	
+	@Benchmark
+	public Vectorf normalCoherent() {
+		return ground.getNormalAt(nextCoherentX(), normal);
+	}
+	
+	@Benchmark
+	public Vectorf normalRandom() {
+		return ground.getNormalAt(nextRandomX(), normal);
+	}
+}
@@ -0,0 +1,148 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import game.LevelPack;
+import game.LevelPointsParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing level points in the format stored in the level database:
+ * "x y z" triples separated by commas, against loading the same level from a
+ * compiled level pack. splitAndBox is the parser LevelPointsParser used to
+ * have, kept here as the baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LevelParseBenchmark {
+	
+	@Param({"1000", "100000"})
+	public int pointCount;
+	
+	private String pointsStr;
+	private String levelsText;
+	private ByteBuffer levelPackFile;
+	
+	@Setup
+	public void setUp() {
+		pointsStr = makeDbPointsString(pointCount, new Random(42));
+		float[] vertices = LevelPointsParser.getGlPointsArrayFromString(pointsStr);
+		levelsText = makeLevelsText(vertices);
+		levelPackFile = makeLevelPack(vertices);
+	}
+	
+	/**
+	 * The vertices as level 1 of a levels.txt file
+	 */
+	static String makeLevelsText(float[] vertices) {
+		StringBuilder sb = new StringBuilder(vertices.length * 10);
+		sb.append("Level 1:\n\n");
+		for (int i = 0; i < vertices.length; i += 3) {
+			sb.append("\t\t").append(vertices[i]).append("f, ").append(vertices[i + 1]).append("f, ")
+					.append(vertices[i + 2]).append("f,\n");
+			if (i % 6 == 3) {
+				sb.append("\t\t\n");
+			}
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Same layout tools.LevelCompiler writes, holding one level numbered 1
+	 */
+	static ByteBuffer makeLevelPack(float[] vertices) {
+		int dataStart = LevelPack.HEADER_BYTES + LevelPack.INDEX_ENTRY_BYTES;
+		ByteBuffer pack = ByteBuffer.allocateDirect(dataStart + vertices.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+		pack.putInt(LevelPack.MAGIC).putInt(LevelPack.VERSION).putInt(1);
+		pack.putInt(1).putInt(dataStart).putInt(vertices.length);
+		for (float f : vertices) {
+			pack.putFloat(f);
+		}
+		pack.position(0);
+		return pack;
+	}
+	
+	static String makeDbPointsString(int pointCount, Random rand) {
+		StringBuilder sb = new StringBuilder(pointCount * 20);
+		float x = 0;
+		for (int i = 0; i < pointCount; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(-x).append("f ").append(rand.nextFloat() * 4 - 2).append("f 0.0f");
+			x += 0.5f + rand.nextFloat();
+		}
+		return sb.toString();
+	}
+	
+	@Benchmark
+	public float[] getGlPointsArrayFromString() {
+		return LevelPointsParser.getGlPointsArrayFromString(pointsStr);
+	}
+	
+	@Benchmark
+	public float[] splitAndBox() {
+		return splitAndBox(pointsStr);
+	}
+	
+	@Benchmark
+	public Object parseLevelsText() {
+		return LevelPointsParser.parseLevelsText(levelsText);
+	}
+	
+	static float[] splitAndBox(String pointsStr) {
+		List<Float> pointCoords = new ArrayList<Float>();
+		
+		String[] points = pointsStr.split(",");
+		for (String point : points) {
+			String[] parts = point.split(" ");
+			Float x = Float.valueOf(parts[0]);
+			Float y = Float.valueOf(parts[1]);
+			Float z = Float.valueOf(parts[2]);
+			
+			pointCoords.add(x);
+			pointCoords.add(y);
+			pointCoords.add(z);
+			
+			if (pointCoords.size() > 3) {
+				int addAgainIndex = pointCoords.size() - 3;
+				pointCoords.add(pointCoords.get(addAgainIndex));
+				pointCoords.add(pointCoords.get(addAgainIndex + 1));
+				pointCoords.add(pointCoords.get(addAgainIndex + 2));
+			}
+		}
+		
+		float[] pointCoordsAsPrimitives = new float[pointCoords.size()];
+		for (int i = 0; i < pointCoords.size(); i++) {
+			pointCoordsAsPrimitives[i] = pointCoords.get(i).floatValue();
+		}
+		
+		return pointCoordsAsPrimitives;
+	}
+	
+	@Benchmark
+	public float[] levelPackRead() throws IOException {
+		return new LevelPack(levelPackFile).readLevel(1);
+	}
+}
@@ -0,0 +1,130 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import core.TimeSource;
+import game.ChunkedGroundGenerator;
+import game.InputScript;
+import game.Simulation;
+import objects.GameObject;
+import objects.Ground;
+import physics.PhysicsHandler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One physics step for the player, on its own and as part of a full
+ * simulation tick (which also extends the ground when needed).
+ *
+ * The player rides with the throttle open, like a player would, so the steps
+ * timed are a mix of rolling, taking off, flying and landing rather than a
+ * bike stood still. Each iteration starts the ride again, and a player that
+ * falls into a pit is put back on the ground past it, so a ride never ends.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PhysicsStepBenchmark {
+	
+	private static final float DT = 1f / Simulation.TICKS_PER_SECOND;
+	private static final long SEED = 42;
+	private static final float TARGET_SPEED = 12;
+	//Ground for physicsUpdate, which doesn't extend it. Fits in the ground's ring.
+	private static final int UPDATE_GROUND_CHUNKS = 3;
+	private static final float START_HEIGHT = 1;
+	//Well down a pit, so the ride can't carry on
+	private static final float FALLEN_Y = -50;
+	private static final float RESPAWN_SEARCH_STEP = 0.5f;
+	
+	private final InputScript throttle = new InputScript() {
+		public void apply(long tick, GameObject player) {
+			if (player.getVelocity().x < TARGET_SPEED) {
+				player.getVelocity().x += 1;
+			}
+		}
+	};
+	
+	private Simulation simulation;
+	
+	private PhysicsHandler physicsHandler;
+	private GameObject player;
+	private Ground ground;
+	private long tick;
+	
+	@Setup
+	public void setUp() {
+		physicsHandler = new PhysicsHandler();
+		player = new GameObject();
+		
+		ChunkedGroundGenerator generator = new ChunkedGroundGenerator(SEED);
+		ground = generator.createGround();
+		for (int k = 1; k < UPDATE_GROUND_CHUNKS; k++) {
+			float[] chunk = generator.generateChunk(k);
+			ground.addPoints(chunk, chunk.length, 0);
+		}
+	}
+	
+	/**
+	 * Back to the start of the ride, standing still
+	 */
+	@Setup(Level.Iteration)
+	public void resetRide() {
+		//The simulation's ground has moved on, so it starts again from scratch
+		simulation = new Simulation(TimeSource.SYSTEM, new ChunkedGroundGenerator(SEED));
+		simulation.setInputScript(throttle);
+		
+		placeOnGround(player, ground, ground.getFirstPointX());
+		tick = 0;
+	}
+	
+	@Benchmark
+	public GameObject physicsUpdate() {
+		throttle.apply(tick++, player);
+		physicsHandler.update(player, ground, DT);
+		respawnIfFallen(player, ground);
+		return player;
+	}
+	
+	@Benchmark
+	public Simulation simulationTick() {
+		simulation.tick();
+		respawnIfFallen(simulation.getPlayer(), simulation.getGround());
+		return simulation;
+	}
+	
+	/**
+	 * Puts a player that's fallen down a pit (or off the end of the ground) back
+	 * on the ground past it, or at the start if there's none.
+	 */
+	private static void respawnIfFallen(GameObject player, Ground ground) {
+		if (player.getPositionY() > FALLEN_Y) {
+			return;
+		}
+		float x = Math.max(player.getPositionX(), ground.getFirstPointX());
+		while (x < ground.getLastPointX() && ground.getYPositionAt(x) < FALLEN_Y) {
+			x += RESPAWN_SEARCH_STEP;
+		}
+		if (x >= ground.getLastPointX()) {
+			x = ground.getFirstPointX();
+		}
+		placeOnGround(player, ground, x);
+	}
+	
+	private static void placeOnGround(GameObject player, Ground ground, float x) {
+		player.setPosition(x, ground.getYPositionAt(x) + START_HEIGHT);
+		player.getVelocity().set(0, 0, 0);
+	}
+}
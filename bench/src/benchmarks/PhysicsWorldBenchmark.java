@@ -0,0 +1,86 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import game.ChunkedGroundGenerator;
+import game.Simulation;
+import objects.GameObject;
+import objects.Ground;
+import physics.PhysicsWorld;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One physics world step for many bodies scattered over a chunk of ground,
+ * some in the air and some resting on it. Cost should grow roughly linearly
+ * with the number of bodies, not with its square.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PhysicsWorldBenchmark {
+	
+	private static final float DT = 1f / Simulation.TICKS_PER_SECOND;
+	private static final long SEED = 42;
+	private static final float MAX_START_HEIGHT = 20f;
+	
+	@Param({"10", "100", "1000"})
+	public int bodyCount;
+	
+	private Ground ground;
+	private PhysicsWorld world;
+	private float[] startXs;
+	private float[] startYs;
+	
+	@Setup
+	public void setUp() {
+		ChunkedGroundGenerator generator = new ChunkedGroundGenerator(SEED);
+		ground = generator.createGround();
+		world = new PhysicsWorld();
+		
+		Random random = new Random(SEED);
+		startXs = new float[bodyCount];
+		startYs = new float[bodyCount];
+		for (int i = 0; i < bodyCount; i++) {
+			GameObject body = new GameObject();
+			body.setCollisionRadius(0.1f + random.nextFloat() * 0.3f);
+			startXs[i] = random.nextFloat() * ChunkedGroundGenerator.CHUNK_LENGTH;
+			startYs[i] = random.nextFloat() * MAX_START_HEIGHT;
+			world.addBody(body);
+		}
+	}
+	
+	/**
+	 * Drops everything again, so each iteration sees bodies falling as well as
+	 * resting rather than one settled heap.
+	 */
+	@Setup(Level.Iteration)
+	public void resetBodies() {
+		for (int i = 0; i < bodyCount; i++) {
+			GameObject body = world.getBodies().get(i);
+			body.setPosition(startXs[i], startYs[i]);
+			body.getVelocity().set(0, 0, 0);
+		}
+	}
+	
+	@Benchmark
+	public PhysicsWorld step() {
+		world.step(ground, DT);
+		return world;
+	}
+}
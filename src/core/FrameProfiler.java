@@ -0,0 +1,128 @@
+package core;
+
+/**
+ * Records how long each phase of a frame takes into per-phase histograms, and
+ * counts how often each phase goes over its time budget.
+ * 
+ * Usage, on the thread running the phase:
+ * <pre>
+ * long start = profiler.start();
+ * ...
+ * profiler.end(FrameProfiler.PHASE_PHYSICS, start);</pre>
+ * 
+ * Recording doesn't allocate. When disabled, start() and end() do nothing
+ * beyond a flag check. Reading the results from another thread gives
+ * approximate numbers, which is fine for monitoring.
+ */
+public class FrameProfiler {
+	public static final int PHASE_FRAME = 0;
+	public static final int PHASE_PHYSICS = 1;
+	public static final int PHASE_GROUND_EXTENSION = 2;
+	public static final int PHASE_DRAW = 3;
+	public static final int PHASE_CAMERA = 4;
+	public static final int PHASE_SNAPSHOT = 5;
+	public static final int PHASE_COUNT = 6;
+	
+	private static final String[] PHASE_NAMES = {
+		"frame", "physics", "ground extension", "draw", "camera", "snapshot"
+	};
+	
+	private static final long NANOS_PER_MILLI = 1000000L;
+	private static final long[] DEFAULT_BUDGETS_NANOS = {
+		16666667L,	//60fps
+		4 * NANOS_PER_MILLI,
+		2 * NANOS_PER_MILLI,
+		8 * NANOS_PER_MILLI,
+		1 * NANOS_PER_MILLI,
+		1 * NANOS_PER_MILLI
+	};
+	
+	private final TimeSource timeSource;
+	private final Histogram[] histograms = new Histogram[PHASE_COUNT];
+	private final long[] budgetsNanos = new long[PHASE_COUNT];
+	private final long[] overBudgetCounts = new long[PHASE_COUNT];
+	private volatile boolean enabled = true;
+	
+	public FrameProfiler(TimeSource timeSource) {
+		this.timeSource = timeSource;
+		for (int i = 0; i < PHASE_COUNT; i++) {
+			histograms[i] = new Histogram();
+			budgetsNanos[i] = DEFAULT_BUDGETS_NANOS[i];
+		}
+	}
+	
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+	
+	public boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**
+	 * @return Start time to pass to end()
+	 */
+	public long start() {
+		return enabled ? timeSource.nanoTime() : 0;
+	}
+	
+	public void end(int phase, long startNanos) {
+		if (!enabled) {
+			return;
+		}
+		long duration = timeSource.nanoTime() - startNanos;
+		histograms[phase].record(duration);
+		if (duration > budgetsNanos[phase]) {
+			overBudgetCounts[phase]++;
+		}
+	}
+	
+	public void setBudgetNanos(int phase, long budgetNanos) {
+		budgetsNanos[phase] = budgetNanos;
+	}
+	
+	public Histogram getHistogram(int phase) {
+		return histograms[phase];
+	}
+	
+	public long getOverBudgetCount(int phase) {
+		return overBudgetCounts[phase];
+	}
+	
+	public static String getPhaseName(int phase) {
+		return PHASE_NAMES[phase];
+	}
+	
+	public void reset() {
+		for (int i = 0; i < PHASE_COUNT; i++) {
+			histograms[i].reset();
+			overBudgetCounts[i] = 0;
+		}
+	}
+	
+	/**
+	 * One line per phase: sample count, p50/p95/p99/max in milliseconds and the
+	 * number of samples over budget.
+	 */
+	public String dump() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%-17s %8s %8s %8s %8s %8s %12s%n",
+				"phase", "count", "p50", "p95", "p99", "max", "over budget"));
+		for (int i = 0; i < PHASE_COUNT; i++) {
+			Histogram h = histograms[i];
+			sb.append(String.format("%-17s %8d %8.3f %8.3f %8.3f %8.3f %12d%n",
+					PHASE_NAMES[i],
+					h.getCount(),
+					toMillis(h.getPercentile(50)),
+					toMillis(h.getPercentile(95)),
+					toMillis(h.getPercentile(99)),
+					toMillis(h.getMax()),
+					overBudgetCounts[i]));
+		}
+		return sb.toString();
+	}
+	
+	private static double toMillis(long nanos) {
+		return (double) nanos / NANOS_PER_MILLI;
+	}
+}
@@ -0,0 +1,94 @@
+package core;
+
+/**
+ * Fixed-size histogram of durations in nanoseconds, cheap enough to record
+ * into every frame: recording is a few shifts and an array increment, and
+ * nothing is allocated after construction.
+ * 
+ * Buckets are log-linear: each power of two is split into 8 equal buckets, so
+ * a percentile is reported to within 12.5% of the true value. Durations of
+ * 2^41 ns (about 36.6 minutes) and above all land in the last bucket. The exact max is kept separately.
+ */
+public class Histogram {
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_EXPONENT = 40;
+	private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+	
+	private final long[] counts = new long[BUCKET_COUNT];
+	private long totalCount;
+	private long max;
+	
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts[bucketIndex(nanos)]++;
+		totalCount++;
+		if (nanos > max) {
+			max = nanos;
+		}
+	}
+	
+	private static int bucketIndex(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		int index = (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+		return Math.min(index, BUCKET_COUNT - 1);
+	}
+	
+	/**
+	 * @return Largest value that falls in the bucket
+	 */
+	private static long bucketUpperBound(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		int subBucket = index % SUB_BUCKETS;
+		int shift = exponent - SUB_BUCKET_BITS;
+		long lowerBound = (long) (SUB_BUCKETS + subBucket) << shift;
+		return lowerBound + (1L << shift) - 1;
+	}
+	
+	/**
+	 * @param percentile 0 to 100
+	 * @return Upper bound of the bucket holding the given percentile, capped at
+	 * the max recorded value. 0 if nothing has been recorded.
+	 */
+	public long getPercentile(double percentile) {
+		if (totalCount == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(percentile / 100 * totalCount);
+		rank = Math.max(1, Math.min(rank, totalCount));
+		
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(bucketUpperBound(i), max);
+			}
+		}
+		return max;
+	}
+	
+	public long getMax() {
+		return max;
+	}
+	
+	public long getCount() {
+		return totalCount;
+	}
+	
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] = 0;
+		}
+		totalCount = 0;
+		max = 0;
+	}
+}
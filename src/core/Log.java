@@ -0,0 +1,23 @@
+package core;
+
+/**
+ * Static logging entry point for the simulation core, in the style of
+ * android.util.Log. Logs nothing until a Logger is plugged in.
+ */
+public final class Log {
+	private static volatile Logger logger = Logger.NONE;
+	
+	private Log() {}
+	
+	public static void setLogger(Logger newLogger) {
+		logger = (newLogger == null) ? Logger.NONE : newLogger;
+	}
+	
+	public static void d(String tag, String message) {
+		logger.d(tag, message);
+	}
+	
+	public static void e(String tag, String message) {
+		logger.e(tag, message);
+	}
+}
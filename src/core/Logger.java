@@ -0,0 +1,18 @@
+package core;
+
+/**
+ * Log output for the simulation core. The Android app plugs in one that writes
+ * to logcat; headless runs can print to a stream or log nothing.
+ */
+public interface Logger {
+	
+	void d(String tag, String message);
+	
+	void e(String tag, String message);
+	
+	public static final Logger NONE = new Logger() {
+		public void d(String tag, String message) {}
+		
+		public void e(String tag, String message) {}
+	};
+}
@@ -0,0 +1,17 @@
+package core;
+
+/**
+ * Clock that only moves when told to, for stepping the simulation faster (or
+ * slower) than real time.
+ */
+public class ManualTimeSource implements TimeSource {
+	private long nanos;
+	
+	public long nanoTime() {
+		return nanos;
+	}
+	
+	public void advance(long deltaNanos) {
+		nanos += deltaNanos;
+	}
+}
@@ -0,0 +1,154 @@
+package core;
+
+/**
+ * Pure Java replacement for the parts of android.opengl.Matrix the simulation
+ * uses, so it runs on a plain JVM. Same conventions as android.opengl.Matrix:
+ * 4x4 matrices are float[16] in column-major order, angles are in degrees.
+ */
+public final class Matrix4 {
+	
+	private Matrix4() {}
+	
+	public static void setIdentityM(float[] m, int offset) {
+		for (int i = 0; i < 16; i++) {
+			m[offset + i] = 0;
+		}
+		m[offset] = 1;
+		m[offset + 5] = 1;
+		m[offset + 10] = 1;
+		m[offset + 15] = 1;
+	}
+	
+	/**
+	 * m = m * translation(x, y, z)
+	 */
+	public static void translateM(float[] m, int offset, float x, float y, float z) {
+		for (int i = 0; i < 4; i++) {
+			int mi = offset + i;
+			m[12 + mi] += m[mi] * x + m[4 + mi] * y + m[8 + mi] * z;
+		}
+	}
+	
+	/**
+	 * m = m * scale(x, y, z)
+	 */
+	public static void scaleM(float[] m, int offset, float x, float y, float z) {
+		for (int i = 0; i < 4; i++) {
+			int mi = offset + i;
+			m[mi] *= x;
+			m[4 + mi] *= y;
+			m[8 + mi] *= z;
+		}
+	}
+	
+	/**
+	 * Sets rm to a rotation of angle degrees around the axis (x, y, z).
+	 */
+	public static void setRotateM(float[] rm, int offset, float angle, float x, float y, float z) {
+		rm[offset + 3] = 0;
+		rm[offset + 7] = 0;
+		rm[offset + 11] = 0;
+		rm[offset + 12] = 0;
+		rm[offset + 13] = 0;
+		rm[offset + 14] = 0;
+		rm[offset + 15] = 1;
+		
+		double radians = Math.toRadians(angle);
+		float s = (float) Math.sin(radians);
+		float c = (float) Math.cos(radians);
+		
+		float length = (float) Math.sqrt(x * x + y * y + z * z);
+		if (length != 1) {
+			float recipLength = 1 / length;
+			x *= recipLength;
+			y *= recipLength;
+			z *= recipLength;
+		}
+		float nc = 1 - c;
+		float xy = x * y;
+		float yz = y * z;
+		float zx = z * x;
+		float xs = x * s;
+		float ys = y * s;
+		float zs = z * s;
+		rm[offset] = x * x * nc + c;
+		rm[offset + 4] = xy * nc - zs;
+		rm[offset + 8] = zx * nc + ys;
+		rm[offset + 1] = xy * nc + zs;
+		rm[offset + 5] = y * y * nc + c;
+		rm[offset + 9] = yz * nc - xs;
+		rm[offset + 2] = zx * nc - ys;
+		rm[offset + 6] = yz * nc + xs;
+		rm[offset + 10] = z * z * nc + c;
+	}
+	
+	/**
+	 * result = lhs * rhs. result may be the same array as rhs, but must not
+	 * overlap lhs.
+	 */
+	public static void multiplyMM(float[] result, int resultOffset,
+			float[] lhs, int lhsOffset, float[] rhs, int rhsOffset) {
+		for (int col = 0; col < 4; col++) {
+			int rc = rhsOffset + col * 4;
+			float r0 = rhs[rc];
+			float r1 = rhs[rc + 1];
+			float r2 = rhs[rc + 2];
+			float r3 = rhs[rc + 3];
+			for (int row = 0; row < 4; row++) {
+				int l = lhsOffset + row;
+				result[resultOffset + col * 4 + row] =
+						lhs[l] * r0 + lhs[l + 4] * r1 + lhs[l + 8] * r2 + lhs[l + 12] * r3;
+			}
+		}
+	}
+	
+	/**
+	 * resultVec = lhsMat * rhsVec, for 4 element vectors. resultVec may be the
+	 * same array as rhsVec.
+	 */
+	public static void multiplyMV(float[] resultVec, int resultOffset,
+			float[] lhsMat, int lhsOffset, float[] rhsVec, int rhsOffset) {
+		float v0 = rhsVec[rhsOffset];
+		float v1 = rhsVec[rhsOffset + 1];
+		float v2 = rhsVec[rhsOffset + 2];
+		float v3 = rhsVec[rhsOffset + 3];
+		for (int row = 0; row < 4; row++) {
+			int l = lhsOffset + row;
+			resultVec[resultOffset + row] =
+					lhsMat[l] * v0 + lhsMat[l + 4] * v1 + lhsMat[l + 8] * v2 + lhsMat[l + 12] * v3;
+		}
+	}
+	
+	/**
+	 * Sets m to the 2D model matrix translate(x, y) * rotateZ(angle) * scale(scaleX, scaleY),
+	 * without going through any matrix multiplies.
+	 */
+	public static void setTransform2D(float[] m, int offset, float x, float y,
+			float angleDegrees, float scaleX, float scaleY) {
+		double radians = Math.toRadians(angleDegrees);
+		setTransform2D(m, offset, x, y, (float) Math.cos(radians), (float) Math.sin(radians), scaleX, scaleY);
+	}
+	
+	/**
+	 * As setTransform2D above, for callers that already have the angle's cos and sin.
+	 */
+	public static void setTransform2D(float[] m, int offset, float x, float y,
+			float c, float s, float scaleX, float scaleY) {
+		m[offset] = c * scaleX;
+		m[offset + 1] = s * scaleX;
+		m[offset + 2] = 0;
+		m[offset + 3] = 0;
+		m[offset + 4] = -s * scaleY;
+		m[offset + 5] = c * scaleY;
+		m[offset + 6] = 0;
+		m[offset + 7] = 0;
+		m[offset + 8] = 0;
+		m[offset + 9] = 0;
+		m[offset + 10] = 1;
+		m[offset + 11] = 0;
+		m[offset + 12] = x;
+		m[offset + 13] = y;
+		m[offset + 14] = 0;
+		m[offset + 15] = 1;
+	}
+}
@@ -0,0 +1,27 @@
+package core;
+
+import java.io.PrintStream;
+
+public class PrintStreamLogger implements Logger {
+	private final PrintStream out;
+	private final boolean debugEnabled;
+	
+	/**
+	 * @param out
+	 * @param debugEnabled Whether d() messages are printed, or just errors
+	 */
+	public PrintStreamLogger(PrintStream out, boolean debugEnabled) {
+		this.out = out;
+		this.debugEnabled = debugEnabled;
+	}
+	
+	public void d(String tag, String message) {
+		if (debugEnabled) {
+			out.println("D/" + tag + ": " + message);
+		}
+	}
+	
+	public void e(String tag, String message) {
+		out.println("E/" + tag + ": " + message);
+	}
+}
@@ -0,0 +1,80 @@
+package core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free queue for exactly one producer thread and one consumer
+ * thread. Neither side ever blocks or allocates: offer fails when the queue is
+ * full and poll returns null when it's empty, and each side decides for itself
+ * whether to wait.
+ *
+ * Each index is only written by its own side, so publishing an element is just
+ * an ordered store of the tail (lazySet) and the other side's volatile read of
+ * it makes the element visible.
+ */
+public final class SpscQueue<E> {
+	private final Object[] slots;
+	private final int mask;
+	
+	//Next slot to read; written only by the consumer
+	private final AtomicLong head = new AtomicLong();
+	//Next slot to write; written only by the producer
+	private final AtomicLong tail = new AtomicLong();
+	
+	/**
+	 * @param capacity Rounded up to a power of two
+	 */
+	public SpscQueue(int capacity) {
+		int size = 1;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		slots = new Object[size];
+		mask = size - 1;
+	}
+	
+	/**
+	 * Producer only.
+	 * @return False if the queue is full
+	 */
+	public boolean offer(E element) {
+		long t = tail.get();
+		if (t - head.get() == slots.length) {
+			return false;
+		}
+		slots[(int) t & mask] = element;
+		tail.lazySet(t + 1);
+		return true;
+	}
+	
+	/**
+	 * Consumer only.
+	 * @return The oldest element, or null if the queue is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public E poll() {
+		long h = head.get();
+		if (h == tail.get()) {
+			return null;
+		}
+		int slot = (int) h & mask;
+		E element = (E) slots[slot];
+		slots[slot] = null;
+		head.lazySet(h + 1);
+		return element;
+	}
+	
+	/**
+	 * Number of elements queued. Safe from any thread, but only a snapshot:
+	 * either side may change it straight away.
+	 */
+	public int size() {
+		long h = head.get();	//Head first, so the tail read after it can't be behind it
+		long t = tail.get();
+		return (int) Math.min(t - h, slots.length);
+	}
+	
+	public int capacity() {
+		return slots.length;
+	}
+}
@@ -0,0 +1,16 @@
+package core;
+
+/**
+ * Monotonic clock for the simulation, so headless runs can drive time
+ * themselves instead of waiting on the real one.
+ */
+public interface TimeSource {
+	
+	long nanoTime();
+	
+	public static final TimeSource SYSTEM = new TimeSource() {
+		public long nanoTime() {
+			return System.nanoTime();
+		}
+	};
+}
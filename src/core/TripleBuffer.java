@@ -0,0 +1,71 @@
+package core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free handoff of the latest state from one producer thread to one
+ * consumer thread, through three reusable buffers. The producer fills its
+ * buffer and publishes it; the consumer takes whichever buffer was published
+ * last. Neither side ever waits for the other or allocates, and the consumer
+ * never sees a buffer while it's being written. States the consumer is too
+ * slow to take are skipped, which for drawing is what's wanted.
+ *
+ * Each side owns one buffer at a time and the third sits between them. Both
+ * publishing and taking just swap their buffer for that one with getAndSet,
+ * which also makes the producer's writes visible to the consumer.
+ */
+public final class TripleBuffer<T> {
+	//Set on the shared index when it holds a buffer the consumer hasn't taken
+	private static final int FRESH = 4;
+	private static final int INDEX_MASK = 3;
+
+	private final Object[] buffers;
+	//Index of the buffer between the two sides, plus FRESH
+	private final AtomicInteger shared = new AtomicInteger(1);
+	private int writeIndex = 0;	//Producer only
+	private int readIndex = 2;	//Consumer only
+
+	public TripleBuffer(T first, T second, T third) {
+		buffers = new Object[] { first, second, third };
+	}
+
+	/**
+	 * Producer only.
+	 * @return The buffer to fill before calling publish()
+	 */
+	@SuppressWarnings("unchecked")
+	public T getWriteBuffer() {
+		return (T) buffers[writeIndex];
+	}
+
+	/**
+	 * Producer only. Makes the write buffer the latest, and swaps in another to
+	 * write next. The new write buffer holds an older state, not a copy of this
+	 * one.
+	 */
+	public void publish() {
+		writeIndex = shared.getAndSet(writeIndex | FRESH) & INDEX_MASK;
+	}
+
+	/**
+	 * Consumer only. The buffer stays the consumer's, unchanged, until the next
+	 * call.
+	 * @return The latest published buffer, or the same one as last time if
+	 * nothing has been published since
+	 */
+	@SuppressWarnings("unchecked")
+	public T getReadBuffer() {
+		if ((shared.get() & FRESH) != 0) {
+			readIndex = shared.getAndSet(readIndex) & INDEX_MASK;
+		}
+		return (T) buffers[readIndex];
+	}
+
+	/**
+	 * Consumer only.
+	 * @return Whether getReadBuffer() would return a newer buffer
+	 */
+	public boolean hasNewBuffer() {
+		return (shared.get() & FRESH) != 0;
+	}
+}
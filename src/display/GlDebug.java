@@ -0,0 +1,42 @@
+package display;
+
+import game.bikerbob.BuildConfig;
+import android.opengl.GLES20;
+import android.util.Log;
+
+/**
+ * GL error checking that only runs in debug builds. glGetError forces the
+ * driver to sync with the GPU, so release builds must not call it per draw.
+ */
+public final class GlDebug {
+	/** Compile-time constant, so release builds drop the checks entirely */
+	public static final boolean ENABLED = BuildConfig.DEBUG;
+	
+	private static final String TAG = "GlDebug";
+	
+	private GlDebug() {}
+	
+    /**
+     * Utility method for debugging OpenGL calls. Provide the name of the call
+     * just after making it:
+     *
+     * <pre>
+     * GLES20.glUniformMatrix4fv(...);
+     * GlDebug.checkGlError("glUniformMatrix4fv");</pre>
+     *
+     * If the operation is not successful, the check throws an error.
+     * Does nothing in release builds.
+     *
+     * @param glOperation - Name of the OpenGL call to check.
+     */
+	public static void checkGlError(String glOperation) {
+		if (!ENABLED) {
+			return;
+		}
+		int error;
+		while ((error = GLES20.glGetError()) != GLES20.GL_NO_ERROR) {
+			Log.e(TAG, glOperation + ": glError " + error);
+			throw new RuntimeException(glOperation + ": glError " + error);
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package display;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import objects.Mesh;
+import android.opengl.GLES20;
+
+/**
+ * GPU copies of meshes. Each Mesh is uploaded into its own static vertex
+ * buffer object the first time it's bound, and every object using that mesh
+ * then draws from the same buffer, so no vertex data crosses the bus per draw.
+ * 
+ * Vertices are interleaved: x, y, z, u, v.
+ * 
+ * Buffers belong to the GL context; create a new MeshBuffers when the context
+ * is recreated (onSurfaceCreated) rather than reusing the old handles.
+ */
+public class MeshBuffers {
+	private static final int BYTES_PER_FLOAT = 4;
+	private static final int FLOATS_PER_VERTEX = Mesh.COORDS_PER_VERTEX + Mesh.TEX_COORDS_PER_VERTEX;
+	
+	public static final int VERTEX_STRIDE_BYTES = FLOATS_PER_VERTEX * BYTES_PER_FLOAT;
+	public static final int POSITION_OFFSET_BYTES = 0;
+	public static final int TEX_COORD_OFFSET_BYTES = Mesh.COORDS_PER_VERTEX * BYTES_PER_FLOAT;
+	
+	private final Map<Mesh, Integer> bufferHandles = new IdentityHashMap<Mesh, Integer>();
+	
+	/**
+	 * Binds the mesh's vertex buffer to GL_ARRAY_BUFFER, uploading it first if
+	 * this is the first time the mesh has been seen.
+	 */
+	public void bind(Mesh mesh) {
+		Integer handle = bufferHandles.get(mesh);
+		if (handle == null) {
+			handle = upload(mesh);
+			bufferHandles.put(mesh, handle);
+		}
+		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, handle);
+	}
+	
+	private int upload(Mesh mesh) {
+		float[] positions = mesh.getPositions();
+		float[] texCoords = mesh.getTexCoords();
+		int vertexCount = mesh.getVertexCount();
+		
+		FloatBuffer interleaved = ByteBuffer.allocateDirect(vertexCount * VERTEX_STRIDE_BYTES)
+				.order(ByteOrder.nativeOrder()).asFloatBuffer();
+		for (int v = 0; v < vertexCount; v++) {
+			interleaved.put(positions, v * Mesh.COORDS_PER_VERTEX, Mesh.COORDS_PER_VERTEX);
+			interleaved.put(texCoords, v * Mesh.TEX_COORDS_PER_VERTEX, Mesh.TEX_COORDS_PER_VERTEX);
+		}
+		interleaved.position(0);
+		
+		final int[] handle = new int[1];
+		GLES20.glGenBuffers(1, handle, 0);
+		if (handle[0] == 0) {
+			throw new RuntimeException("Error creating vertex buffer");
+		}
+		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, handle[0]);
+		GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, vertexCount * VERTEX_STRIDE_BYTES,
+				interleaved, GLES20.GL_STATIC_DRAW);
+		GlDebug.checkGlError("glBufferData");
+		
+		return handle[0];
+	}
+	
+	/**
+	 * Deletes all uploaded buffers. Only valid while the context that created them is current.
+	 */
+	public void release() {
+		if (bufferHandles.isEmpty()) {
+			return;
+		}
+		int[] handles = new int[bufferHandles.size()];
+		int i = 0;
+		for (Integer handle : bufferHandles.values()) {
+			handles[i++] = handle;
+		}
+		GLES20.glDeleteBuffers(handles.length, handles, 0);
+		bufferHandles.clear();
+	}
+}
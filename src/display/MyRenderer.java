@@ -6,18 +6,21 @@
 package display;
 
 import game.Scene;
+import game.TerrainProducer;
+import game.WorldSnapshot;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.List;
 
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
+
+import core.FrameProfiler;
 import objects.GameObject;
-import objects.Ground;
-import objects.Plane;
-import objects.Pointf;
-import objects.Vectorf;
+import objects.Mesh;
+import objects.ViewRect;
 import android.content.Context;
 import android.content.res.AssetManager;
 import android.opengl.GLES20;
@@ -28,18 +31,28 @@ import android.util.Log;
 public class MyRenderer implements GLSurfaceView.Renderer {	
 	private final String TAG = "MyRenderer";
 	private final int COORDS_PER_VERTEX = 3;
+	private static final int SPRITE_BATCH_MAX_VERTICES = 6 * 256;	//256 quads
+	private static final int PROFILE_LOG_INTERVAL_FRAMES = 600;
+    
+    //Shaders, and their variable locations resolved once at link time:
+    private ShaderProgram spriteShader;
+    private ShaderProgram groundShader;	//TODO this needs to be in a separate renderer class
     
-    //Shader handles:
-    private int spriteShaderProgram;
-    private int groundShaderProgram;	//TODO this needs to be in a separate renderer class
+    private SpriteBatch spriteBatch;
+    private MeshBuffers meshBuffers;
+    private TextureManager textureManager;
     
-    private int positionHandle;
-    private int colorHandle;
-    private int mvpMatrixHandle;
-    private int textureUniformHandle;
-    private int textureCoordHandle;
+    private int spritePositionHandle;
+    private int spriteTexCoordHandle;
+    private int spriteMvpMatrixHandle;
+    private int spriteTextureUniformHandle;
+    
+    private int groundPositionHandle;
+    private int groundColorHandle;
+    private int groundMvpMatrixHandle;
 
     //Matrices:
+    private final float[] modelViewProjectionMat = new float[16];
     private final float[] viewProjectionMat = new float[16];
     private final float[] projectionMat = new float[16];
     private final float[] viewMat = new float[16];
@@ -47,9 +60,21 @@ public class MyRenderer implements GLSurfaceView.Renderer {
     private int screenHeightPx;
     private int screenWidthPx;
     
+    //What the camera sees, matching viewProjectionMat, for culling
+    private final ViewRect viewRect = new ViewRect();
+    private float viewHalfWidth;
+    private float viewHalfHeight;
+    
+    //Culling stats for the current frame
+    private int spritesDrawn;
+    private int spritesCulled;
+    private int groundVerticesDrawn;
+    private int groundVerticesCulled;
+    
 	private Context appContext;
 	
-    private Scene scene;
+    private volatile Scene scene;	//Also read from the UI thread
+    private int framesSinceProfileLog;
     
 	private static MyRenderer instance;
 	
@@ -73,6 +98,10 @@ public class MyRenderer implements GLSurfaceView.Renderer {
     	return viewProjectionMat;
     }
     
+	public TextureManager getTextureManager() {
+		return textureManager;
+	}
+	
 	public Context getAppContext() {
 		return appContext;
 	}
@@ -84,6 +113,42 @@ public class MyRenderer implements GLSurfaceView.Renderer {
 	public int getScreenHeightPx() {
 		return screenHeightPx;
 	}
+	
+	/**
+	 * Half the width of the world on screen, or 0 before the surface has a size
+	 */
+	public float getViewHalfWidth() {
+		return viewHalfWidth;
+	}
+	
+	/**
+	 * The part of the world drawn this frame
+	 */
+	public ViewRect getViewRect() {
+		return viewRect;
+	}
+	
+	/**
+	 * Sprites drawn so far this frame, i.e. not culled
+	 */
+	public int getSpritesDrawn() {
+		return spritesDrawn;
+	}
+	
+	/**
+	 * Sprites skipped so far this frame for being off screen
+	 */
+	public int getSpritesCulled() {
+		return spritesCulled;
+	}
+	
+	public int getGroundVerticesDrawn() {
+		return groundVerticesDrawn;
+	}
+	
+	public int getGroundVerticesCulled() {
+		return groundVerticesCulled;
+	}
 
 	public void onSurfaceCreated(GL10 unused, EGLConfig config) {
 
@@ -94,46 +159,107 @@ public class MyRenderer implements GLSurfaceView.Renderer {
         loadSpriteShaders();
         loadGroundShaders();
         
+        //Any buffers or textures from a previous context died with it
+        meshBuffers = new MeshBuffers();
+        textureManager = new TextureManager(appContext);
+        
         //Create scene
+        if (scene != null) {
+        	scene.close();
+        }
         scene = new Scene();
     }
 
 	private void loadSpriteShaders() {
-		spriteShaderProgram = loadShaders("shader");
+		spriteShader = loadShaders("shader",
+				new String[] { "aPosition", "aTexCoord" },
+				new String[] { "uMVPMatrix", "uTexture" });
+		
+		spritePositionHandle = spriteShader.getAttribLocation("aPosition");
+		spriteTexCoordHandle = spriteShader.getAttribLocation("aTexCoord");
+		spriteMvpMatrixHandle = spriteShader.getUniformLocation("uMVPMatrix");
+		spriteTextureUniformHandle = spriteShader.getUniformLocation("uTexture");
+		
+		spriteBatch = new SpriteBatch(spriteShader, SPRITE_BATCH_MAX_VERTICES);
 	}
 	
 	private void loadGroundShaders() {
-		groundShaderProgram = loadShaders("line_shader");
+		groundShader = loadShaders("line_shader",
+				new String[] { "vPosition" },
+				new String[] { "vColor", "uMvpMatrix" });
+		
+		groundPositionHandle = groundShader.getAttribLocation("vPosition");
+		groundColorHandle = groundShader.getUniformLocation("vColor");
+		groundMvpMatrixHandle = groundShader.getUniformLocation("uMvpMatrix");
 	}
 	
 	/**
-	 * Loads shaders
+	 * Loads, compiles and links shaders/name.vert and shaders/name.frag
 	 * @param name
-	 * @return Shader program handle
+	 * @param attributeNames
+	 * @param uniformNames
+	 * @return Linked shader program
 	 */
-	private int loadShaders(String name) {
-		//Create shaders:        
-        int vertexShader = loadShader(GLES20.GL_VERTEX_SHADER, "shaders/" + name + ".vert");
-        int fragmentShader = loadShader(GLES20.GL_FRAGMENT_SHADER, "shaders/" + name + ".frag");
-
-        int program = GLES20.glCreateProgram();             // create empty OpenGL Program
-        GLES20.glAttachShader(program, vertexShader);   // add the vertex shader to program
-        GLES20.glAttachShader(program, fragmentShader); // add the fragment shader to program
-        GLES20.glLinkProgram(program);
-        
-        return program;
+	private ShaderProgram loadShaders(String name, String[] attributeNames, String[] uniformNames) {
+		return new ShaderProgram(name,
+				getShaderString("shaders/" + name + ".vert"),
+				getShaderString("shaders/" + name + ".frag"),
+				attributeNames, uniformNames);
 	}
 
     public void onDrawFrame(GL10 unused) {
+    	FrameProfiler profiler = scene.getProfiler();
+    	long frameStart = profiler.start();
 
         // Draw background color
         GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
 
         // Calculate the projection and view transformation
         Matrix.multiplyMM(viewProjectionMat, 0, projectionMat, 0, viewMat, 0);
+        spritesDrawn = 0;
+        spritesCulled = 0;
+        groundVerticesDrawn = 0;
+        groundVerticesCulled = 0;
         
         scene.doCurrentFrame();
+        
+        long cameraStart = profiler.start();
         moveCamera(scene);
+        profiler.end(FrameProfiler.PHASE_CAMERA, cameraStart);
+        
+        profiler.end(FrameProfiler.PHASE_FRAME, frameStart);
+        logProfileOccasionally(profiler);
+    }
+    
+    /**
+     * Stop the scene's simulation while the game isn't showing, and save the
+     * ride so far in case the app is killed. Call from the activity's onPause()
+     * on the UI thread, after the surface view's, so the GL thread is stopped.
+     */
+    public void onPause() {
+    	if (scene != null) {
+    		scene.pause();
+    	}
+    }
+    
+    public void onResume() {
+    	if (scene != null) {
+    		scene.resume();
+    	}
+    }
+    
+    private void logProfileOccasionally(FrameProfiler profiler) {
+    	if (!profiler.isEnabled() || ++framesSinceProfileLog < PROFILE_LOG_INTERVAL_FRAMES) {
+    		return;
+    	}
+    	framesSinceProfileLog = 0;
+    	Log.d(TAG, "Frame timings (ms):\n" + profiler.dump());
+    	
+    	TerrainProducer terrain = scene.getTerrainProducer();
+    	Log.d(TAG, "Terrain queue depth " + terrain.getQueueDepth() + "/" + terrain.getQueueCapacity()
+    			+ ", starved " + terrain.getStarvedCount() + " times");
+    	Log.d(TAG, "Last frame drew " + spritesDrawn + " sprites (" + spritesCulled + " culled), "
+    			+ groundVerticesDrawn + " ground vertices (" + groundVerticesCulled + " culled)");
     }
 
     private final float FAR_PLANE_AND_EYE_Z_POS = 70f;
@@ -143,6 +269,9 @@ public class MyRenderer implements GLSurfaceView.Renderer {
         		-scene.getCameraPosition().x, scene.getCameraPosition().y, -FAR_PLANE_AND_EYE_Z_POS,
         		-scene.getCameraPosition().x, scene.getCameraPosition().y, 0f,
         		0f, 1.0f, 0.0f);
+    	
+    	//Orthographic and looking straight along z, so the view is the projection's bounds around the camera
+    	viewRect.set(scene.getCameraPosition().x, scene.getCameraPosition().y, viewHalfWidth, viewHalfHeight);
 	}
 
 	public void onSurfaceChanged(GL10 unused, int width, int height) {
@@ -158,30 +287,14 @@ public class MyRenderer implements GLSurfaceView.Renderer {
         // in the onDrawFrame() method
         //Matrix.frustumM(projMatrix, 0, -ratio, ratio, -1, 1, 0, 7);
         float ORTHO_BOUNDS_FACTOR = 4;	//Controls the scale of the screen. Larger value here means everything smaller on screen.
+        viewHalfWidth = ORTHO_BOUNDS_FACTOR*ratio;
+        viewHalfHeight = ORTHO_BOUNDS_FACTOR;
         Matrix.orthoM(projectionMat, 0, 
-        		-ORTHO_BOUNDS_FACTOR*ratio, ORTHO_BOUNDS_FACTOR*ratio, //left, right
-        		-ORTHO_BOUNDS_FACTOR, ORTHO_BOUNDS_FACTOR,	//bottom, top
+        		-viewHalfWidth, viewHalfWidth, //left, right
+        		-viewHalfHeight, viewHalfHeight,	//bottom, top
         		0, FAR_PLANE_AND_EYE_Z_POS);	//Near,far
     }
 
-    public int loadShader(int type, String filename){        
-        String shaderCode = getShaderString(filename);
-
-        return loadShaderFromString(type, shaderCode);
-    }
-    
-    private int loadShaderFromString(int type, String shaderCode) {
-        int shader = GLES20.glCreateShader(type);
-
-        shaderCode.hashCode();
-        Log.d("ShaderString", shaderCode);
-        GLES20.glShaderSource(shader, shaderCode);
-        GLES20.glCompileShader(shader);
-
-        return shader;
-    }
-    
-    
     private String getShaderString(String filename) {
     	AssetManager am = appContext.getAssets();
     	InputStream inputStream;
@@ -220,90 +333,83 @@ public class MyRenderer implements GLSurfaceView.Renderer {
     }
 
     /**
-     * Utility method for debugging OpenGL calls. Provide the name of the call
-     * just after making it:
-     *
-     * <pre>
-     * mColorHandle = GLES20.glGetUniformLocation(mProgram, "vColor");
-     * MyGLRenderer.checkGlError("glGetUniformLocation");</pre>
-     *
-     * If the operation is not successful, the check throws an error.
-     *
-     * @param glOperation - Name of the OpenGL call to check.
+     * Draws sprites that don't move (scenery) straight from their meshes' shared
+     * vertex buffers, with each model transform applied by the shader. Unlike the
+     * sprite batch, nothing is transformed or uploaded per frame.
      */
-    public void checkGlError(String glOperation) {
-        int error;
-        while ((error = GLES20.glGetError()) != GLES20.GL_NO_ERROR) {
-            Log.e(TAG, glOperation + ": glError " + error);
-            throw new RuntimeException(glOperation + ": glError " + error);
-        }
-    }
-    
-    public void draw(GameObject obj) {
-    	float[] modelViewProjectionMat = new float[16];
-		Matrix.multiplyMM(modelViewProjectionMat, 0, viewProjectionMat, 0, obj.getTransform(), 0);
-		
-		// Add program to OpenGL environment
-        GLES20.glUseProgram(spriteShaderProgram);
-
-        // get handle to vertex shader's vPosition member
-        positionHandle = GLES20.glGetAttribLocation(spriteShaderProgram, "aPosition");
-
-        // Enable a handle to the triangle vertices
-        GLES20.glEnableVertexAttribArray(positionHandle);
-
-        // Prepare the triangle coordinate data
-        GLES20.glVertexAttribPointer(positionHandle, COORDS_PER_VERTEX,
-                                     GLES20.GL_FLOAT, false,
-                                     obj.getVertexStride(), obj.getVertexBuffer());
-
-        // get handle to fragment shader's vColor member
-        colorHandle = GLES20.glGetUniformLocation(spriteShaderProgram, "uColor");
-
-        // Set color of plain untextured object
-        GLES20.glUniform4fv(colorHandle, 1, obj.getColour(), 0);
-
-        // get handle to shape's transformation matrix
-        mvpMatrixHandle = GLES20.glGetUniformLocation(spriteShaderProgram, "uMVPMatrix");
-        checkGlError("glGetUniformLocation");
-
-        // Apply the projection and view transformation
-        GLES20.glUniformMatrix4fv(mvpMatrixHandle, 1, false, modelViewProjectionMat, 0);
-        checkGlError("glUniformMatrix4fv");
-        
-        
-        /* Texture related bindings: */
-        textureUniformHandle = GLES20.glGetUniformLocation(spriteShaderProgram, "uTexture");
-        textureCoordHandle = GLES20.glGetAttribLocation(spriteShaderProgram, "aTexCoord");
-        
-        // Set the active texture unit to texture unit 0.
-        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-        
-        // Bind the texture to this unit.
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, obj.getTextureDataHandle());
-        
-        // Tell the texture uniform sampler to use this texture in the shader by binding to texture unit 0.
-        GLES20.glUniform1i(textureUniformHandle, 0);
-        
-        
-        obj.getTexCoordBuffer().position(0);
-        GLES20.glVertexAttribPointer(textureCoordHandle, 2, GLES20.GL_FLOAT, false,
-         0, obj.getTexCoordBuffer());
-        
-        GLES20.glEnableVertexAttribArray(textureCoordHandle);
-        
+    public void drawStaticSprites(List<GameObject> sprites) {
+    	spriteShader.use();
+    	
+    	GLES20.glEnableVertexAttribArray(spritePositionHandle);
+    	GLES20.glEnableVertexAttribArray(spriteTexCoordHandle);
+    	
+    	GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+    	GLES20.glUniform1i(spriteTextureUniformHandle, 0);
+    	
         //Enable alpha channel
         GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
         GLES20.glEnable(GLES20.GL_BLEND); 
-        
-        //Draw the vertices
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, obj.getVertexCount());
-        
-        //Disable blend that was enabled above for alpha texturing.
+    	
+    	Mesh boundMesh = null;
+    	for (int i = 0; i < sprites.size(); i++) {
+    		GameObject obj = sprites.get(i);
+    		Mesh mesh = obj.getMesh();
+    		if (!viewRect.intersects(mesh, obj.getTransform())) {
+    			spritesCulled++;
+    			continue;
+    		}
+    		spritesDrawn++;
+    		
+    		if (mesh != boundMesh) {
+    			meshBuffers.bind(mesh);
+    			GLES20.glVertexAttribPointer(spritePositionHandle, Mesh.COORDS_PER_VERTEX, GLES20.GL_FLOAT, false,
+    					MeshBuffers.VERTEX_STRIDE_BYTES, MeshBuffers.POSITION_OFFSET_BYTES);
+    			GLES20.glVertexAttribPointer(spriteTexCoordHandle, Mesh.TEX_COORDS_PER_VERTEX, GLES20.GL_FLOAT, false,
+    					MeshBuffers.VERTEX_STRIDE_BYTES, MeshBuffers.TEX_COORD_OFFSET_BYTES);
+    			boundMesh = mesh;
+    		}
+    		
+    		Matrix.multiplyMM(modelViewProjectionMat, 0, viewProjectionMat, 0, obj.getTransform(), 0);
+    		GLES20.glUniformMatrix4fv(spriteMvpMatrixHandle, 1, false, modelViewProjectionMat, 0);
+    		
+    		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, obj.getTextureDataHandle());
+    		GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, mesh.getVertexCount());
+    	}
+    	GlDebug.checkGlError("drawStaticSprites");
+    	
+    	//Client-side vertex arrays used by the other draw paths need this unbound
+    	GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+    	
         GLES20.glDisable(GLES20.GL_BLEND);
-
-        // Disable vertex array
-        GLES20.glDisableVertexAttribArray(positionHandle);
+    	GLES20.glDisableVertexAttribArray(spritePositionHandle);
+    	GLES20.glDisableVertexAttribArray(spriteTexCoordHandle);
+    }
+    
+    /**
+     * Start batching sprites. Nothing else may be drawn until endSprites().
+     */
+    public void beginSprites() {
+    	spriteBatch.begin(viewProjectionMat);
+    }
+    
+    /**
+     * Batches obj, unless it's off screen.
+     */
+    public void drawSprite(GameObject obj) {
+    	if (!viewRect.intersects(obj.getMesh(), obj.getRenderTransform())) {
+    		spritesCulled++;
+    		return;
+    	}
+    	spritesDrawn++;
+    	spriteBatch.draw(obj);
+    }
+    
+    public void endSprites() {
+    	spriteBatch.end();
+    }
+    
+    public SpriteBatch getSpriteBatch() {
+    	return spriteBatch;
     }
 
     /**
@@ -311,87 +417,40 @@ public class MyRenderer implements GLSurfaceView.Renderer {
      * http://stackoverflow.com/questions/16027455/what-is-the-easiest-way-to-draw-line-using-opengl-es-android
      * 
      * TODO: merge common code between this and draw(GroundObject)
-     * @param groundPlane
+     * @param snapshot Has the ground near the player, already cut down to roughly the screen
      */
-	public void drawGroundPlane(Ground ground) {
-		float[] modelViewProjectionMat = new float[16];
-		Matrix.multiplyMM(modelViewProjectionMat, 0, viewProjectionMat, 0, ground.getTransform(), 0);
+	public void drawGroundPlane(WorldSnapshot snapshot, float[] colour) {
+		Matrix.multiplyMM(modelViewProjectionMat, 0, viewProjectionMat, 0, snapshot.getGroundTransform(), 0);
 		
 		 // Add program to OpenGL ES environment
-	    GLES20.glUseProgram(groundShaderProgram);
-
-	    // get handle to vertex shader's vPosition member
-	    positionHandle = GLES20.glGetAttribLocation(groundShaderProgram, "vPosition");
+	    groundShader.use();
 
 	    // Enable a handle to the triangle vertices
-	    GLES20.glEnableVertexAttribArray(positionHandle);
+	    GLES20.glEnableVertexAttribArray(groundPositionHandle);
 
 	    // Prepare the triangle coordinate data
-	    GLES20.glVertexAttribPointer(positionHandle, COORDS_PER_VERTEX,
+	    GLES20.glVertexAttribPointer(groundPositionHandle, COORDS_PER_VERTEX,
 	                                 GLES20.GL_FLOAT, false,
-	                                 ground.getVertexStride(), ground.getVertexBuffer());
-
-	    // get handle to fragment shader's vColor member
-	    colorHandle = GLES20.glGetUniformLocation(groundShaderProgram, "vColor");
+	                                 COORDS_PER_VERTEX * 4, snapshot.getGroundVertices());
 
 	    // Set color for drawing the triangle
-	    GLES20.glUniform4fv(colorHandle, 1, ground.getColor(), 0);
-
-	    // get handle to shape's transformation matrix
-	    mvpMatrixHandle = GLES20.glGetUniformLocation(groundShaderProgram, "uMvpMatrix");
-	    checkGlError("glGetUniformLocation");
+	    GLES20.glUniform4fv(groundColorHandle, 1, colour, 0);
 
 	    // Apply the projection and view transformation
-	    GLES20.glUniformMatrix4fv(mvpMatrixHandle, 1, false, modelViewProjectionMat, 0);
-	    checkGlError("glUniformMatrix4fv");
+	    GLES20.glUniformMatrix4fv(groundMvpMatrixHandle, 1, false, modelViewProjectionMat, 0);
+	    GlDebug.checkGlError("glUniformMatrix4fv");
 
 
-	    // Draw the triangle
-	    GLES20.glDrawArrays(GLES20.GL_LINES, 0, ground.getVertexCount());
+	    // The simulation thread only copied the points within reach of the screen.
+	    // The ground is far taller than the screen at pits, so only x is worth culling by.
+	    int visibleCount = snapshot.getGroundVertexCount();
+	    groundVerticesDrawn += visibleCount;
+	    groundVerticesCulled += snapshot.getGroundTotalVertexCount() - visibleCount;
+	    GLES20.glDrawArrays(GLES20.GL_LINE_STRIP, 0, visibleCount);
+	    GlDebug.checkGlError("glDrawArrays");
 
 	    // Disable vertex array
-	    GLES20.glDisableVertexAttribArray(positionHandle);
-	}
-
-	/**
-	 * TODO
-	 * @param obj
-	 * @return
-	 */
-	private boolean withinViewFrustum(GameObject obj) {
-		
-		//Get camera pos, top, bottom, left, right planes
-		float camX = -scene.getCameraPosition().x;
-		float camY = scene.getCameraPosition().y;
-		float camZ = -FAR_PLANE_AND_EYE_Z_POS;
-		
-		Pointf cameraPos = new Pointf(camX, camY, camZ);
-		
-		float lookAtX = -scene.getCameraPosition().x;
-		float lookAtY = scene.getCameraPosition().y;
-		float lookAtZ = 0f;
-		
-		float upX = 0f; 
-		float upY = 1f;
-		float upZ = 0f;
-		
-		Plane leftFrustumPlane = new Plane(
-				new Pointf(camX - 1, camY, camZ), new Vectorf(-1, 0, 0));
-		
-		Plane rightFrustumPlane = new Plane(
-				new Pointf(camX + 1, camY, camZ), new Vectorf(1,0,0));
-		
-		if (leftFrustumPlane.distToPoint(cameraPos) < 0) {
-			return false;
-		}
-		
-		if (rightFrustumPlane.distToPoint(cameraPos) < 0) {
-			return false;
-		}
-		
-		//TODO: Get up/down planes too
-		
-		return true;
+	    GLES20.glDisableVertexAttribArray(groundPositionHandle);
 	}
 }
 
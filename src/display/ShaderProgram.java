@@ -0,0 +1,128 @@
+package display;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import android.opengl.GLES20;
+import android.util.Log;
+
+/**
+ * A linked GL shader program. Compile and link failures throw with the
+ * driver's info log, and the locations of the program's attributes and
+ * uniforms are looked up once at link time rather than on every draw.
+ */
+public class ShaderProgram {
+	private static final String TAG = "ShaderProgram";
+	
+	private final String name;
+	private final int programHandle;
+	private final Map<String, Integer> attributeLocations = new HashMap<String, Integer>();
+	private final Map<String, Integer> uniformLocations = new HashMap<String, Integer>();
+	
+	/**
+	 * Compiles and links the program, then resolves the given attributes and uniforms.
+	 * @param name For error messages
+	 * @param vertexSource
+	 * @param fragmentSource
+	 * @param attributeNames Attributes the caller will use
+	 * @param uniformNames Uniforms the caller will use
+	 * @throws RuntimeException if either shader fails to compile or the program fails to link
+	 */
+	public ShaderProgram(String name, String vertexSource, String fragmentSource,
+			String[] attributeNames, String[] uniformNames) {
+		this.name = name;
+		
+		int vertexShader = compileShader(GLES20.GL_VERTEX_SHADER, vertexSource);
+		int fragmentShader = compileShader(GLES20.GL_FRAGMENT_SHADER, fragmentSource);
+		
+		programHandle = GLES20.glCreateProgram();
+		GLES20.glAttachShader(programHandle, vertexShader);
+		GLES20.glAttachShader(programHandle, fragmentShader);
+		GLES20.glLinkProgram(programHandle);
+		
+		//Program keeps the shaders alive for as long as they're attached
+		GLES20.glDeleteShader(vertexShader);
+		GLES20.glDeleteShader(fragmentShader);
+		
+		final int[] status = new int[1];
+		GLES20.glGetProgramiv(programHandle, GLES20.GL_LINK_STATUS, status, 0);
+		if (status[0] == 0) {
+			String log = GLES20.glGetProgramInfoLog(programHandle);
+			GLES20.glDeleteProgram(programHandle);
+			throw new RuntimeException("Error linking shader program " + name + ": " + log);
+		}
+		
+		for (String attributeName : attributeNames) {
+			int location = GLES20.glGetAttribLocation(programHandle, attributeName);
+			warnIfMissing(location, "attribute", attributeName);
+			attributeLocations.put(attributeName, location);
+		}
+		for (String uniformName : uniformNames) {
+			int location = GLES20.glGetUniformLocation(programHandle, uniformName);
+			warnIfMissing(location, "uniform", uniformName);
+			uniformLocations.put(uniformName, location);
+		}
+		GlDebug.checkGlError("ShaderProgram " + name);
+	}
+	
+	private int compileShader(int type, String source) {
+		if (source == null) {
+			throw new RuntimeException("No source for shader in program " + name);
+		}
+		int shader = GLES20.glCreateShader(type);
+		GLES20.glShaderSource(shader, source);
+		GLES20.glCompileShader(shader);
+		
+		final int[] status = new int[1];
+		GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
+		if (status[0] == 0) {
+			String log = GLES20.glGetShaderInfoLog(shader);
+			GLES20.glDeleteShader(shader);
+			String typeName = (type == GLES20.GL_VERTEX_SHADER) ? "vertex" : "fragment";
+			throw new RuntimeException("Error compiling " + typeName + " shader for " + name + ": " + log);
+		}
+		return shader;
+	}
+	
+	/**
+	 * Unused variables are optimised out by the compiler and have no location.
+	 * Setting them is a harmless no-op, but worth knowing about.
+	 */
+	private void warnIfMissing(int location, String kind, String variableName) {
+		if (location == -1) {
+			Log.w(TAG, name + ": " + kind + " " + variableName + " not found or unused");
+		}
+	}
+	
+	public void use() {
+		GLES20.glUseProgram(programHandle);
+	}
+	
+	/**
+	 * @return Location resolved at link time
+	 * @throws IllegalArgumentException if the attribute wasn't given to the constructor
+	 */
+	public int getAttribLocation(String attributeName) {
+		Integer location = attributeLocations.get(attributeName);
+		if (location == null) {
+			throw new IllegalArgumentException(name + " has no attribute " + attributeName);
+		}
+		return location;
+	}
+	
+	/**
+	 * @return Location resolved at link time
+	 * @throws IllegalArgumentException if the uniform wasn't given to the constructor
+	 */
+	public int getUniformLocation(String uniformName) {
+		Integer location = uniformLocations.get(uniformName);
+		if (location == null) {
+			throw new IllegalArgumentException(name + " has no uniform " + uniformName);
+		}
+		return location;
+	}
+	
+	public int getHandle() {
+		return programHandle;
+	}
+}
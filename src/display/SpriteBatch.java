@@ -0,0 +1,184 @@
+package display;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import objects.GameObject;
+import objects.Mesh;
+import android.opengl.GLES20;
+
+/**
+ * Collects a frame's sprites into one vertex buffer and draws them with as few
+ * draw calls as possible. Each sprite's vertices are transformed into world
+ * space on the CPU, so consecutive sprites with the same texture share a single
+ * glDrawArrays. The batch is flushed when the texture changes, when it is full,
+ * and at end().
+ * 
+ * Usage, with nothing else drawn in between:
+ * <pre>
+ * batch.begin(viewProjectionMat);
+ * batch.draw(sprite);
+ * ...
+ * batch.end();</pre>
+ */
+public class SpriteBatch {
+	private static final int BYTES_PER_FLOAT = 4;
+	private static final int POSITION_COORDS = 3;
+	private static final int TEX_COORDS = 2;
+	private static final int FLOATS_PER_VERTEX = POSITION_COORDS + TEX_COORDS;
+	private static final int VERTEX_STRIDE_BYTES = FLOATS_PER_VERTEX * BYTES_PER_FLOAT;
+	private static final int NO_TEXTURE = -1;
+	
+	private final ShaderProgram shader;
+	private final int positionHandle;
+	private final int texCoordHandle;
+	private final int mvpMatrixHandle;
+	private final int textureUniformHandle;
+	
+	private final int maxVertices;
+	private final float[] vertices;
+	private final FloatBuffer vertexBuffer;
+	private int vertexCount;
+	private int currentTexture = NO_TEXTURE;
+	
+	private boolean drawing;
+	private int drawCallsThisFrame;
+	private int spritesThisFrame;
+	
+	/**
+	 * @param shader Sprite shader with aPosition, aTexCoord, uMVPMatrix and uTexture
+	 * @param maxVertices Vertices held before the batch is flushed early
+	 */
+	public SpriteBatch(ShaderProgram shader, int maxVertices) {
+		this.shader = shader;
+		this.positionHandle = shader.getAttribLocation("aPosition");
+		this.texCoordHandle = shader.getAttribLocation("aTexCoord");
+		this.mvpMatrixHandle = shader.getUniformLocation("uMVPMatrix");
+		this.textureUniformHandle = shader.getUniformLocation("uTexture");
+		
+		this.maxVertices = maxVertices;
+		this.vertices = new float[maxVertices * FLOATS_PER_VERTEX];
+		this.vertexBuffer = ByteBuffer.allocateDirect(vertices.length * BYTES_PER_FLOAT)
+				.order(ByteOrder.nativeOrder()).asFloatBuffer();
+	}
+	
+	/**
+	 * Sets up the sprite shader and GL state for the batch.
+	 * @param viewProjectionMat Applied to all sprites; their model transforms are applied on the CPU
+	 */
+	public void begin(float[] viewProjectionMat) {
+		if (drawing) {
+			throw new IllegalStateException("SpriteBatch.end() must be called before begin()");
+		}
+		drawing = true;
+		drawCallsThisFrame = 0;
+		spritesThisFrame = 0;
+		currentTexture = NO_TEXTURE;
+		
+		shader.use();
+		GLES20.glUniformMatrix4fv(mvpMatrixHandle, 1, false, viewProjectionMat, 0);
+		
+		GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+		GLES20.glUniform1i(textureUniformHandle, 0);
+		
+		GLES20.glEnableVertexAttribArray(positionHandle);
+		GLES20.glEnableVertexAttribArray(texCoordHandle);
+		
+		//Enable alpha channel
+		GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+		GLES20.glEnable(GLES20.GL_BLEND);
+		GlDebug.checkGlError("SpriteBatch.begin");
+	}
+	
+	/**
+	 * Adds a sprite, drawn with its render transform.
+	 */
+	public void draw(GameObject obj) {
+		if (!drawing) {
+			throw new IllegalStateException("SpriteBatch.begin() must be called before draw()");
+		}
+		Mesh mesh = obj.getMesh();
+		int objVertexCount = mesh.getVertexCount();
+		if (objVertexCount > maxVertices) {
+			throw new IllegalArgumentException("Sprite has more vertices than the batch can hold");
+		}
+		
+		int texture = obj.getTextureDataHandle();
+		if (texture != currentTexture || vertexCount + objVertexCount > maxVertices) {
+			flush();
+			currentTexture = texture;
+		}
+		
+		float[] m = obj.getRenderTransform();
+		float[] positions = mesh.getPositions();
+		float[] texCoords = mesh.getTexCoords();
+		int out = vertexCount * FLOATS_PER_VERTEX;
+		for (int v = 0; v < objVertexCount; v++) {
+			int p = v * POSITION_COORDS;
+			float x = positions[p];
+			float y = positions[p + 1];
+			float z = positions[p + 2];
+			vertices[out] = m[0] * x + m[4] * y + m[8] * z + m[12];
+			vertices[out + 1] = m[1] * x + m[5] * y + m[9] * z + m[13];
+			vertices[out + 2] = m[2] * x + m[6] * y + m[10] * z + m[14];
+			vertices[out + 3] = texCoords[v * TEX_COORDS];
+			vertices[out + 4] = texCoords[v * TEX_COORDS + 1];
+			out += FLOATS_PER_VERTEX;
+		}
+		vertexCount += objVertexCount;
+		spritesThisFrame++;
+	}
+	
+	/**
+	 * Draws everything batched so far, then restores GL state.
+	 */
+	public void end() {
+		if (!drawing) {
+			throw new IllegalStateException("SpriteBatch.begin() must be called before end()");
+		}
+		flush();
+		drawing = false;
+		
+		GLES20.glDisable(GLES20.GL_BLEND);
+		GLES20.glDisableVertexAttribArray(positionHandle);
+		GLES20.glDisableVertexAttribArray(texCoordHandle);
+	}
+	
+	private void flush() {
+		if (vertexCount == 0) {
+			return;
+		}
+		
+		vertexBuffer.position(0);
+		vertexBuffer.put(vertices, 0, vertexCount * FLOATS_PER_VERTEX);
+		
+		vertexBuffer.position(0);
+		GLES20.glVertexAttribPointer(positionHandle, POSITION_COORDS, GLES20.GL_FLOAT, false,
+				VERTEX_STRIDE_BYTES, vertexBuffer);
+		vertexBuffer.position(POSITION_COORDS);
+		GLES20.glVertexAttribPointer(texCoordHandle, TEX_COORDS, GLES20.GL_FLOAT, false,
+				VERTEX_STRIDE_BYTES, vertexBuffer);
+		
+		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, currentTexture);
+		GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, vertexCount);
+		GlDebug.checkGlError("SpriteBatch.flush");
+		
+		drawCallsThisFrame++;
+		vertexCount = 0;
+	}
+	
+	/**
+	 * @return Draw calls made since the last begin()
+	 */
+	public int getDrawCallCount() {
+		return drawCallsThisFrame;
+	}
+	
+	/**
+	 * @return Sprites drawn since the last begin()
+	 */
+	public int getSpriteCount() {
+		return spritesThisFrame;
+	}
+}
@@ -0,0 +1,206 @@
+package display;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.opengl.GLES20;
+import android.opengl.GLUtils;
+import android.util.Log;
+
+/**
+ * Owns every GL texture loaded from a drawable. Textures are shared by name and
+ * reference counted, so any number of objects using "biker" cost one decode and
+ * one upload.
+ *
+ * A texture whose count drops to zero stays resident in case it's wanted again,
+ * until the total size of resident textures goes over the byte budget. Unused
+ * textures are then deleted least recently used first. Textures still in use are
+ * never evicted, even if that means going over budget.
+ *
+ * Textures belong to the GL context; create a new TextureManager when the
+ * context is recreated (onSurfaceCreated) rather than reusing the old handles.
+ */
+public class TextureManager {
+	private static final String TAG = "TextureManager";
+
+	public static final int DEFAULT_BUDGET_BYTES = 16 * 1024 * 1024;
+
+	private static class Texture {
+		final int handle;
+		final int sizeBytes;
+		int refCount;
+
+		Texture(int handle, int sizeBytes) {
+			this.handle = handle;
+			this.sizeBytes = sizeBytes;
+		}
+	}
+
+	private final Context context;
+
+	//In access order, so iteration starts at the least recently used texture
+	private final LinkedHashMap<String, Texture> textures = new LinkedHashMap<String, Texture>(16, 0.75f, true);
+
+	private int budgetBytes;
+	private int residentBytes;
+
+	public TextureManager(Context context) {
+		this(context, DEFAULT_BUDGET_BYTES);
+	}
+
+	public TextureManager(Context context, int budgetBytes) {
+		this.context = context;
+		this.budgetBytes = budgetBytes;
+	}
+
+	/**
+	 * Acquire a texture decoded as ARGB_8888.
+	 * @see #acquire(String, Bitmap.Config)
+	 */
+	public int acquire(String name) {
+		return acquire(name, Bitmap.Config.ARGB_8888);
+	}
+
+	/**
+	 * Returns the GL handle of the named drawable, loading it if it isn't
+	 * resident, and takes a reference to it. Every acquire must be matched by a
+	 * release.
+	 * @param name Drawable resource name
+	 * @param config Decode format, e.g. RGB_565 for opaque images to halve their
+	 * size. Only used when the texture is loaded; a texture that is already
+	 * resident is shared as is.
+	 */
+	public int acquire(String name, Bitmap.Config config) {
+		Texture texture = textures.get(name);
+		if (texture == null) {
+			texture = load(name, config);
+			textures.put(name, texture);
+			residentBytes += texture.sizeBytes;
+		}
+		texture.refCount++;
+
+		evictUnused();
+		return texture.handle;
+	}
+
+	/**
+	 * Drops a reference taken by acquire. The texture stays resident until the
+	 * budget needs the space.
+	 */
+	public void release(String name) {
+		Texture texture = textures.get(name);
+		if (texture == null || texture.refCount == 0) {
+			throw new IllegalStateException("Texture " + name + " released more times than acquired");
+		}
+		texture.refCount--;
+
+		evictUnused();
+	}
+
+	public void setBudgetBytes(int budgetBytes) {
+		this.budgetBytes = budgetBytes;
+		evictUnused();
+	}
+
+	public int getBudgetBytes() {
+		return budgetBytes;
+	}
+
+	public int getResidentBytes() {
+		return residentBytes;
+	}
+
+	public int getTextureCount() {
+		return textures.size();
+	}
+
+	/**
+	 * Deletes every texture, in use or not. Only valid while the context that
+	 * created them is current.
+	 */
+	public void releaseAll() {
+		if (textures.isEmpty()) {
+			return;
+		}
+		int[] handles = new int[textures.size()];
+		int i = 0;
+		for (Texture texture : textures.values()) {
+			handles[i++] = texture.handle;
+		}
+		GLES20.glDeleteTextures(handles.length, handles, 0);
+		textures.clear();
+		residentBytes = 0;
+	}
+
+	private void evictUnused() {
+		Iterator<Map.Entry<String, Texture>> it = textures.entrySet().iterator();
+		while (residentBytes > budgetBytes && it.hasNext()) {
+			Texture texture = it.next().getValue();
+			if (texture.refCount > 0) {
+				continue;
+			}
+			GLES20.glDeleteTextures(1, new int[] { texture.handle }, 0);
+			residentBytes -= texture.sizeBytes;
+			it.remove();
+		}
+
+		if (residentBytes > budgetBytes) {
+			Log.w(TAG, "Textures in use (" + residentBytes + " bytes) exceed budget of " + budgetBytes);
+		}
+	}
+
+	private Texture load(String name, Bitmap.Config config) {
+		int resourceId = context.getResources().getIdentifier(name,
+				"drawable", context.getPackageName());
+		if (resourceId == 0) {
+			throw new IllegalArgumentException("No drawable called " + name);
+		}
+
+		final BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inScaled = false; // No prescaling
+		options.inPreferredConfig = config;
+
+		// read in resource
+		final Bitmap bitmap = BitmapFactory.decodeResource(
+				context.getResources(), resourceId, options);
+		if (bitmap == null) {
+			throw new RuntimeException("Could not decode texture " + name);
+		}
+
+		final int[] textureHandle = new int[1];
+		GLES20.glGenTextures(1, textureHandle, 0);
+		if (textureHandle[0] == 0) {
+			bitmap.recycle();
+			throw new RuntimeException("Error loading texture");
+		}
+
+		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureHandle[0]);
+
+		// set filtering
+		GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D,
+				GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
+		GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D,
+				GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+		// Atlas pages aren't powers of two, which GLES 2.0 only allows with clamping
+		GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D,
+				GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+		GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D,
+				GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+
+		// Load the bitmap into the bound texture. GL keeps the bitmap's format,
+		// so an RGB_565 bitmap becomes a 16 bit texture.
+		GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
+		GlDebug.checkGlError("texImage2D " + name);
+
+		int sizeBytes = bitmap.getRowBytes() * bitmap.getHeight();
+
+		// Recycle the bitmap, since its data has been loaded into OpenGL.
+		bitmap.recycle();
+
+		return new Texture(textureHandle[0], sizeBytes);
+	}
+}
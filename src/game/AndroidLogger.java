@@ -0,0 +1,18 @@
+package game;
+
+import android.util.Log;
+import core.Logger;
+
+/**
+ * Sends simulation core logging to logcat.
+ */
+public class AndroidLogger implements Logger {
+	
+	public void d(String tag, String message) {
+		Log.d(tag, message);
+	}
+	
+	public void e(String tag, String message) {
+		Log.e(tag, message);
+	}
+}
@@ -0,0 +1,187 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import objects.GameObject;
+import objects.Ground;
+import objects.Pointf;
+
+/**
+ * Endless random ground where every stretch is reproducible. The world is cut
+ * into chunks CHUNK_LENGTH long, and chunk k is a pure function of the seed and
+ * k: it has its own random number stream, and starts and ends at height 0 so it
+ * joins up with its neighbours whatever they contain.
+ *
+ * Ground that has been evicted can therefore be regenerated on demand instead
+ * of kept, and the same seed always gives the same course, for replays and
+ * benchmarks.
+ */
+public class ChunkedGroundGenerator implements GroundSource {
+	public static final float CHUNK_LENGTH = 40f;
+
+	//Same shape of jump as GroundGenerator by default; the rest is in TerrainConfig
+	private static final float MIN_DIST_TO_NEXT_JUMP = 5f;
+	private static final float MIN_JUMP_DISTANCE = 1.5f;
+	private static final float MIN_SLOPE_DISTANCE = 1.5f;
+	private static final float PIT_BOTTOM = -1000f;
+
+	private static final float MIN_JUMP_LENGTH = MIN_DIST_TO_NEXT_JUMP + 2 * MIN_SLOPE_DISTANCE + MIN_JUMP_DISTANCE;
+	private static final int MAX_JUMPS_PER_CHUNK = (int) (CHUNK_LENGTH / MIN_JUMP_LENGTH);
+	private static final int POINTS_PER_JUMP = 6;
+	private static final int COORDS_PER_VERTEX = 3;
+
+	/** Most points generateChunk can write: the start, each jump, and the end */
+	public static final int MAX_POINTS_PER_CHUNK = 2 + POINTS_PER_JUMP * MAX_JUMPS_PER_CHUNK;
+
+	private static final float EXTEND_DISTANCE_AHEAD = 10f;
+
+	private final long seed;
+	private final float maxDistToNextJump;
+	private final float maxJumpAngle;
+	private final float maxJumpDistance;
+	private final float maxSlopeDistance;
+
+	//State of the random number stream for the chunk being generated
+	private long randomState;
+
+	//GroundSource state: next chunk to append, and where it's built
+	private long nextChunk;
+	private final float[] chunkCoords = new float[MAX_POINTS_PER_CHUNK * COORDS_PER_VERTEX];
+
+	public ChunkedGroundGenerator(long seed) {
+		this(seed, new TerrainConfig());
+	}
+
+	public ChunkedGroundGenerator(long seed, TerrainConfig config) {
+		this.seed = seed;
+		this.maxDistToNextJump = config.getMaxDistToNextJump();
+		this.maxJumpAngle = config.getMaxJumpAngle();
+		this.maxJumpDistance = config.getMaxJumpDistance();
+		this.maxSlopeDistance = config.getMaxSlopeDistance();
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Index of the chunk containing x
+	 */
+	public static long chunkIndexAt(float x) {
+		return (long) Math.floor(x / CHUNK_LENGTH);
+	}
+
+	/**
+	 * Writes chunk k's points, as x, y, z floats in world coordinates. The first
+	 * point is (k * CHUNK_LENGTH, 0) and the last is the start of chunk k + 1.
+	 * Positions are floats, so far enough out (hundreds of thousands of units)
+	 * jumps start to lose their shape.
+	 * @param out At least MAX_POINTS_PER_CHUNK * 3 floats
+	 * @return Number of floats written
+	 */
+	public int generateChunk(long k, float[] out) {
+		startRandomStream(k);
+
+		float chunkStart = k * CHUNK_LENGTH;
+		float chunkEnd = (k + 1) * CHUNK_LENGTH;
+		int n = 0;
+		n = put(out, n, chunkStart, 0);
+
+		float prevX = chunkStart;
+		//The count only limits anything once float rounding has shrunk the jumps
+		for (int jump = 0; jump < MAX_JUMPS_PER_CHUNK; jump++) {
+			float distanceToNextJump = MIN_DIST_TO_NEXT_JUMP + nextFloat() * maxDistToNextJump;
+			float jumpAngle = nextFloat() * maxJumpAngle;
+			float jumpGapDistance = MIN_JUMP_DISTANCE + nextFloat() * maxJumpDistance;
+			float jumpSlopeDistance = MIN_SLOPE_DISTANCE + nextFloat() * maxSlopeDistance;
+
+			float startOfJumpX = prevX + distanceToNextJump;
+			float endOfJumpX = startOfJumpX + jumpSlopeDistance;
+			float startOfLandingX = endOfJumpX + jumpGapDistance;
+			float endOfLandingX = startOfLandingX + jumpSlopeDistance;
+			if (endOfLandingX >= chunkEnd) {
+				break;	//Flat the rest of the way
+			}
+			float jumpHeight = (float) (jumpSlopeDistance * Math.tan(jumpAngle * Math.PI / 180));
+
+			n = put(out, n, startOfJumpX, 0);
+			n = put(out, n, endOfJumpX, jumpHeight);
+			n = put(out, n, endOfJumpX, PIT_BOTTOM);
+			n = put(out, n, startOfLandingX, PIT_BOTTOM);
+			n = put(out, n, startOfLandingX, jumpHeight);
+			n = put(out, n, endOfLandingX, 0);
+
+			prevX = endOfLandingX;
+		}
+
+		return put(out, n, chunkEnd, 0);
+	}
+
+	/**
+	 * As generateChunk(long, float[]), into a new array of just the right size.
+	 */
+	public float[] generateChunk(long k) {
+		float[] coords = new float[MAX_POINTS_PER_CHUNK * COORDS_PER_VERTEX];
+		int count = generateChunk(k, coords);
+		float[] result = new float[count];
+		System.arraycopy(coords, 0, result, 0, count);
+		return result;
+	}
+
+	/**
+	 * Starts with chunk 0, where the player starts.
+	 */
+	public Ground createGround() {
+		int count = generateChunk(0, chunkCoords);
+		List<Pointf> points = new ArrayList<Pointf>(count / COORDS_PER_VERTEX);
+		for (int i = 0; i < count; i += COORDS_PER_VERTEX) {
+			points.add(new Pointf(chunkCoords[i], chunkCoords[i + 1], chunkCoords[i + 2]));
+		}
+		nextChunk = 1;
+		return new Ground(points);
+	}
+
+	public boolean extendGround(Ground ground, GameObject player) {
+		if (player.getPositionX() <= ground.getLastPointX() - EXTEND_DISTANCE_AHEAD) {
+			return false;
+		}
+		int count = generateChunk(nextChunk, chunkCoords);
+		nextChunk++;
+		ground.addPoints(chunkCoords, count, player.getPositionX());
+		return true;
+	}
+
+	public void close() {
+	}
+
+	private static int put(float[] out, int n, float x, float y) {
+		out[n] = x;
+		out[n + 1] = y;
+		out[n + 2] = 0;
+		return n + COORDS_PER_VERTEX;
+	}
+
+	/**
+	 * Seeds the stream from (seed, k) alone, so chunks don't depend on the order
+	 * they're generated in.
+	 */
+	private void startRandomStream(long k) {
+		randomState = mix(seed ^ mix(k + 0x9E3779B97F4A7C15L));
+	}
+
+	/**
+	 * SplitMix64: a tiny generator whose every output is a good hash of its
+	 * state, so neighbouring seeds and chunk indices still give unrelated streams.
+	 */
+	private float nextFloat() {
+		randomState += 0x9E3779B97F4A7C15L;
+		return (mix(randomState) >>> 40) * 0x1.0p-24f;
+	}
+
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,107 @@
+package game;
+
+/**
+ * Accumulator for running the simulation at a fixed tick rate, independent of
+ * the rate frames are drawn at.
+ * 
+ * Each frame, advance() adds the real time elapsed since the previous frame and
+ * returns how many whole ticks to simulate. Whatever is left over (less than a
+ * tick) is reported by getAlpha() so rendering can interpolate between the last
+ * two simulated states.
+ * 
+ * Based on http://gafferongames.com/game-physics/fix-your-timestep/
+ */
+public class FixedTimestep {
+	private static final long NANOS_PER_SECOND = 1000000000L;
+	
+	private final long tickNanos;
+	private final float tickSeconds;
+	private final int maxTicksPerFrame;
+	
+	private long accumulatorNanos;
+	private long lastFrameNanos;
+	private boolean started;
+	
+	/**
+	 * @param ticksPerSecond Simulation rate.
+	 * @param maxTicksPerFrame Cap on ticks per frame, so a slow frame can't snowball
+	 * into ever slower frames. Time beyond the cap is dropped and the game slows down instead.
+	 */
+	public FixedTimestep(int ticksPerSecond, int maxTicksPerFrame) {
+		if (ticksPerSecond <= 0 || maxTicksPerFrame <= 0) {
+			throw new IllegalArgumentException("Tick rate and max ticks per frame must be positive");
+		}
+		this.tickNanos = NANOS_PER_SECOND / ticksPerSecond;
+		this.tickSeconds = 1f / ticksPerSecond;
+		this.maxTicksPerFrame = maxTicksPerFrame;
+	}
+	
+	/**
+	 * @param nowNanos Current time of a monotonic clock, e.g. System.nanoTime()
+	 * @return Number of ticks to simulate this frame. Always 0 on the first call.
+	 */
+	public int advance(long nowNanos) {
+		if (!started) {
+			started = true;
+			lastFrameNanos = nowNanos;
+			return 0;
+		}
+		
+		accumulatorNanos += nowNanos - lastFrameNanos;
+		lastFrameNanos = nowNanos;
+		
+		int ticks = (int) Math.min(accumulatorNanos / tickNanos, maxTicksPerFrame);
+		accumulatorNanos -= ticks * tickNanos;
+		
+		if (accumulatorNanos >= tickNanos) {	//Hit the cap, drop the backlog
+			accumulatorNanos %= tickNanos;
+		}
+		
+		return ticks;
+	}
+	
+	/**
+	 * @return Fraction (0 to 1) of a tick left over after the last advance(), for
+	 * interpolating between the previous and current simulation states.
+	 */
+	public float getAlpha() {
+		return (float) accumulatorNanos / tickNanos;
+	}
+	
+	public float getTickSeconds() {
+		return tickSeconds;
+	}
+	
+	public long getTickNanos() {
+		return tickNanos;
+	}
+	
+	/**
+	 * @return Time, on the clock passed to advance(), that the latest tick
+	 * brings the simulation up to: the last frame's time less the leftover
+	 * fraction of a tick.
+	 */
+	public long getSimulatedNanos() {
+		return lastFrameNanos - accumulatorNanos;
+	}
+	
+	/**
+	 * @param nowNanos Current time of the clock passed to advance()
+	 * @return How long until advance() will have a tick to run. 0 if one is due,
+	 * or if advance() hasn't been called yet.
+	 */
+	public long getNanosUntilNextTick(long nowNanos) {
+		if (!started) {
+			return 0;
+		}
+		return Math.max(getSimulatedNanos() + tickNanos - nowNanos, 0);
+	}
+	
+	/**
+	 * Forget the time since the last frame, e.g. after the game has been paused.
+	 */
+	public void reset() {
+		started = false;
+		accumulatorNanos = 0;
+	}
+}
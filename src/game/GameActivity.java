@@ -14,20 +14,46 @@ import android.os.Bundle;
 import android.view.View;
 
 public class GameActivity extends Activity {
+	private GLSurfaceView gameSurfaceView;
 
 	@Override
 	public void onCreate(Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
+		
+		core.Log.setLogger(new AndroidLogger());
 
 		// Force game to run in landscape
 		this.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_LANDSCAPE);
 		
-		GLSurfaceView gameSurfaceView = createGameSurfaceView();
+		gameSurfaceView = createGameSurfaceView();
 		registerAccelerometer();
 		
 		setContentView(gameSurfaceView);
 	}
 	
+	/**
+	 * The simulation runs on its own thread, so it has to be paused along with
+	 * drawing. Pausing also saves the ride's input log, as this may be the last
+	 * chance to.
+	 */
+	@Override
+	protected void onPause() {
+		super.onPause();
+		if (gameSurfaceView != null) {
+			gameSurfaceView.onPause();
+			MyRenderer.getInstance().onPause();
+		}
+	}
+	
+	@Override
+	protected void onResume() {
+		super.onResume();
+		if (gameSurfaceView != null) {
+			gameSurfaceView.onResume();
+			MyRenderer.getInstance().onResume();
+		}
+	}
+	
 	private void registerAccelerometer() {
 		SensorManager sensorManager;
 		sensorManager = (SensorManager) getSystemService(SENSOR_SERVICE);
@@ -4,12 +4,16 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
-import android.util.FloatMath;
+import objects.GameObject;
 import objects.Ground;
 import objects.Pointf;
 
-public class GroundGenerator {
+/**
+ * Endless random ground, generated a few jumps at a time as the player nears the end.
+ */
+public class GroundGenerator implements GroundSource {
 	
+	private static final float EXTEND_DISTANCE_AHEAD = 10f;
 	private static final float GROUND_LENGTH = 5f;
 	private static final float MAX_DIST_TO_NEXT_JUMP = 10f;
 	private static final float MAX_JUMP_ANGLE = 45f;
@@ -21,6 +25,21 @@ public class GroundGenerator {
 		
 	}
 
+	public Ground createGround() {
+		return generateGround(new Pointf(0,0,0));
+	}
+	
+	public boolean extendGround(Ground ground, GameObject player) {
+		if (player.getPositionX() <= ground.getLastPointX() - EXTEND_DISTANCE_AHEAD) {
+			return false;
+		}
+		ground.addPoints(generateGroundPoints(ground.getLastPoint()), player.getPosition());
+		return true;
+	}
+	
+	public void close() {
+	}
+
 	public Ground generateGround(Pointf startPoint) {
 		List<Pointf> groundPoints = generateGroundPoints(startPoint);
 		return new Ground(groundPoints);
@@ -0,0 +1,29 @@
+package game;
+
+import objects.GameObject;
+import objects.Ground;
+
+/**
+ * Supplies the simulation's ground: all of it up front, or a bit at a time as
+ * the player moves along.
+ */
+public interface GroundSource {
+	
+	/**
+	 * Builds the ground the player starts on. Called once; may block while
+	 * the start of a level loads.
+	 */
+	Ground createGround();
+	
+	/**
+	 * Called every tick. Appends more ground if the player is getting near the
+	 * end of it, and drops ground that's been left behind. Must not block.
+	 * @return True if any ground was added
+	 */
+	boolean extendGround(Ground ground, GameObject player);
+	
+	/**
+	 * Stops any background work. The source can't be used afterwards.
+	 */
+	void close();
+}
@@ -0,0 +1,19 @@
+package game;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Levels held in a map, standing in for the database when running on a plain JVM.
+ */
+public class InMemoryLevelStore implements LevelStore {
+	private final Map<Integer, String> levels = new HashMap<Integer, String>();
+	
+	public synchronized void putLevel(int levelNumber, String points) {
+		levels.put(levelNumber, points);
+	}
+	
+	public synchronized String readPoints(int levelNumber) {
+		return levels.get(levelNumber);
+	}
+}
@@ -0,0 +1,340 @@
+package game;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A ride's input, by tick, with the seed of its terrain: enough to ride it
+ * again exactly, headless and as fast as the CPU allows (see tools.ReplayPlayer).
+ *
+ * Layout, fixed size fields little-endian:
+ * <pre>
+ * header:  int magic ("BBIL"), int version, long seed, int ticksPerSecond
+ * events:  varint ticksSincePreviousEvent, byte type, then if the type has values:
+ *          byte lengths (2 bits per value: 0, 1, 2 or 4 bytes), value bytes
+ * end:     varint ticksSincePreviousEvent, byte END, float playerX, float playerY
+ * </pre>
+ * Varints are unsigned LEB128. Each value is stored as its float bits XORed
+ * with the previous value of the same type and index, low byte first, leaving
+ * off the high bytes that are zero. Repeated and slowly changing values, like
+ * sensor readings and taps, take a byte or two instead of four. The end record
+ * holds the player's final position, so a replay can check it matches.
+ */
+public class InputLog {
+	public static final int MAGIC = 0x4C494242;	//"BBIL" read little-endian
+	public static final int VERSION = 1;
+	public static final int END = 0xFF;
+
+	private static final int[] BYTES_FOR_LENGTH_CODE = { 0, 1, 2, 4 };
+
+	private final long seed;
+	private final int ticksPerSecond;
+	private final int eventCount;
+	private final long[] ticks;
+	private final int[] types;
+	private final float[] values;
+	private final long endTick;
+	private final float endX;
+	private final float endY;
+
+	//Position of the next event to replay
+	private int nextEvent;
+
+	/**
+	 * Records input as the simulation applies it, into memory. Not thread safe;
+	 * only the simulation thread should use it.
+	 */
+	public static class Recorder {
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+		private final int[] previousBits = new int[InputQueue.TYPE_COUNT * InputQueue.MAX_VALUES];
+		private final byte[] valueBytes = new byte[InputQueue.MAX_VALUES * 4];
+		private long previousTick;
+		private boolean finished;
+
+		public Recorder(long seed, int ticksPerSecond) {
+			writeInt(MAGIC);
+			writeInt(VERSION);
+			writeInt((int) seed);
+			writeInt((int) (seed >>> 32));
+			writeInt(ticksPerSecond);
+		}
+
+		public void record(long tick, int type, float a, float b, float c) {
+			if (finished) {
+				throw new IllegalStateException("Recording already finished");
+			}
+			writeTickAndType(tick, type);
+
+			int valueCount = InputQueue.getValueCount(type);
+			if (valueCount == 0) {
+				return;
+			}
+			int lengths = 0;
+			int n = 0;
+			for (int i = 0; i < valueCount; i++) {
+				float value = (i == 0) ? a : (i == 1) ? b : c;
+				int channel = type * InputQueue.MAX_VALUES + i;
+				int bits = Float.floatToRawIntBits(value);
+				int xor = bits ^ previousBits[channel];
+				previousBits[channel] = bits;
+
+				int lengthCode = (xor == 0) ? 0 : ((xor & 0xFFFFFF00) == 0) ? 1 : ((xor & 0xFFFF0000) == 0) ? 2 : 3;
+				lengths |= lengthCode << (2 * i);
+				for (int j = 0; j < BYTES_FOR_LENGTH_CODE[lengthCode]; j++) {
+					valueBytes[n++] = (byte) (xor >>> (8 * j));
+				}
+			}
+			bytes.write(lengths);
+			bytes.write(valueBytes, 0, n);
+		}
+
+		/**
+		 * Ends the recording with the player's final position. Nothing can be
+		 * recorded afterwards.
+		 */
+		public void finish(long tick, float playerX, float playerY) {
+			if (finished) {
+				return;
+			}
+			writeTickAndType(tick, END);
+			writeInt(Float.floatToRawIntBits(playerX));
+			writeInt(Float.floatToRawIntBits(playerY));
+			finished = true;
+		}
+
+		public boolean isFinished() {
+			return finished;
+		}
+
+		/**
+		 * Bytes recorded so far
+		 */
+		public int size() {
+			return bytes.size();
+		}
+
+		public byte[] toByteArray() {
+			return bytes.toByteArray();
+		}
+
+		/**
+		 * Doesn't close out.
+		 */
+		public void writeTo(OutputStream out) throws IOException {
+			bytes.writeTo(out);
+		}
+
+		/**
+		 * Writes the recording so far, ended as finish() would end it, but
+		 * leaves it open so recording can carry on. For saving a ride that may
+		 * never get to finish, e.g. when the app is paused and might be killed.
+		 * Doesn't close out.
+		 */
+		public void writeTo(OutputStream out, long tick, float playerX, float playerY) throws IOException {
+			if (finished) {
+				writeTo(out);
+				return;
+			}
+			if (tick < previousTick) {
+				throw new IllegalArgumentException("Tick " + tick + " is before the previous event's, " + previousTick);
+			}
+			bytes.writeTo(out);
+
+			ByteArrayOutputStream end = new ByteArrayOutputStream(16);
+			long delta = tick - previousTick;
+			while ((delta & ~0x7FL) != 0) {
+				end.write((int) (delta & 0x7F) | 0x80);
+				delta >>>= 7;
+			}
+			end.write((int) delta);
+			end.write(END);
+			writeInt(end, Float.floatToRawIntBits(playerX));
+			writeInt(end, Float.floatToRawIntBits(playerY));
+			end.writeTo(out);
+		}
+
+		private void writeTickAndType(long tick, int type) {
+			if (tick < previousTick) {
+				throw new IllegalArgumentException("Tick " + tick + " is before the previous event's, " + previousTick);
+			}
+			long delta = tick - previousTick;
+			previousTick = tick;
+			while ((delta & ~0x7FL) != 0) {
+				bytes.write((int) (delta & 0x7F) | 0x80);
+				delta >>>= 7;
+			}
+			bytes.write((int) delta);
+			bytes.write(type);
+		}
+
+		private void writeInt(int value) {
+			writeInt(bytes, value);
+		}
+
+		private static void writeInt(ByteArrayOutputStream out, int value) {
+			out.write(value);
+			out.write(value >>> 8);
+			out.write(value >>> 16);
+			out.write(value >>> 24);
+		}
+	}
+
+	/**
+	 * Decodes a whole log.
+	 * @throws IOException If it's not a log, or is cut short before its end record
+	 */
+	public InputLog(byte[] data) throws IOException {
+		Decoder in = new Decoder(data);
+		if (data.length < 20 || in.readInt() != MAGIC) {
+			throw new IOException("Not an input log");
+		}
+		int version = in.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported input log version " + version);
+		}
+		seed = (in.readInt() & 0xFFFFFFFFL) | ((long) in.readInt() << 32);
+		ticksPerSecond = in.readInt();
+
+		//At least 2 bytes an event
+		long[] eventTicks = new long[data.length / 2];
+		int[] eventTypes = new int[data.length / 2];
+		float[] eventValues = new float[data.length / 2 * InputQueue.MAX_VALUES];
+		int[] previousBits = new int[InputQueue.TYPE_COUNT * InputQueue.MAX_VALUES];
+		long tick = 0;
+		int n = 0;
+		while (true) {
+			tick += in.readVarLong();
+			int type = in.readByte();
+			if (type == END) {
+				break;
+			}
+			if (type >= InputQueue.TYPE_COUNT) {
+				throw new IOException("Unknown input type " + type + " at byte " + in.pos);
+			}
+
+			int valueCount = InputQueue.getValueCount(type);
+			int lengths = (valueCount > 0) ? in.readByte() : 0;
+			for (int i = 0; i < valueCount; i++) {
+				int byteCount = BYTES_FOR_LENGTH_CODE[(lengths >>> (2 * i)) & 3];
+				int xor = 0;
+				for (int j = 0; j < byteCount; j++) {
+					xor |= in.readByte() << (8 * j);
+				}
+				int channel = type * InputQueue.MAX_VALUES + i;
+				previousBits[channel] ^= xor;
+				eventValues[n * InputQueue.MAX_VALUES + i] = Float.intBitsToFloat(previousBits[channel]);
+			}
+			eventTicks[n] = tick;
+			eventTypes[n] = type;
+			n++;
+		}
+
+		eventCount = n;
+		ticks = eventTicks;
+		types = eventTypes;
+		values = eventValues;
+		endTick = tick;
+		endX = Float.intBitsToFloat(in.readInt());
+		endY = Float.intBitsToFloat(in.readInt());
+	}
+
+	/**
+	 * Doesn't close in.
+	 */
+	public static InputLog read(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+		byte[] chunk = new byte[4096];
+		int n;
+		while ((n = in.read(chunk)) >= 0) {
+			bytes.write(chunk, 0, n);
+		}
+		return new InputLog(bytes.toByteArray());
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public int getTicksPerSecond() {
+		return ticksPerSecond;
+	}
+
+	public int getEventCount() {
+		return eventCount;
+	}
+
+	/**
+	 * Tick the recording finished on, i.e. how many ticks the ride lasted
+	 */
+	public long getEndTick() {
+		return endTick;
+	}
+
+	public float getEndX() {
+		return endX;
+	}
+
+	public float getEndY() {
+		return endY;
+	}
+
+	/**
+	 * Posts the events recorded for the given tick, which must be the tick
+	 * after the one last replayed (or 0 after rewind()).
+	 * @return Number of events posted
+	 */
+	public int replayTick(long tick, InputQueue queue) {
+		int posted = 0;
+		while (nextEvent < eventCount && ticks[nextEvent] <= tick) {
+			int v = nextEvent * InputQueue.MAX_VALUES;
+			queue.post(types[nextEvent], values[v], values[v + 1], values[v + 2]);
+			nextEvent++;
+			posted++;
+		}
+		return posted;
+	}
+
+	/**
+	 * Starts replaying from the first event again
+	 */
+	public void rewind() {
+		nextEvent = 0;
+	}
+
+	/**
+	 * Reads bytes off the front of a log.
+	 */
+	private static final class Decoder {
+		private final byte[] data;
+		private int pos;
+
+		Decoder(byte[] data) {
+			this.data = data;
+		}
+
+		int readByte() throws IOException {
+			if (pos >= data.length) {
+				throw new IOException("Input log is truncated");
+			}
+			return data[pos++] & 0xFF;
+		}
+
+		int readInt() throws IOException {
+			return readByte() | (readByte() << 8) | (readByte() << 16) | (readByte() << 24);
+		}
+
+		long readVarLong() throws IOException {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				int b = readByte();
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+			throw new IOException("Bad varint at byte " + pos);
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package game;
+
+/**
+ * Player input on its way into the simulation. Touch and sensor events are
+ * posted from the UI thread at any time, and the simulation takes them all at
+ * the start of its next tick, so each event takes effect on a known tick. That
+ * makes a ride repeatable from a log of its input (see InputLog).
+ *
+ * Events are an int type and up to three floats, kept in plain arrays, so
+ * posting doesn't allocate once the arrays have grown to fit.
+ *
+ * Sensor readings arrive far more often than ticks and each replaces the last,
+ * so only the latest reading of each sensor is kept until the next drain.
+ */
+public class InputQueue {
+	/** Change the player's x velocity by a */
+	public static final int ACCELERATE = 0;
+	/** Player picked up; physics stops acting on them until END_DRAG */
+	public static final int START_DRAG = 1;
+	/** Move the dragged player by (a, b) world units */
+	public static final int DRAG_BY = 2;
+	public static final int END_DRAG = 3;
+	/** Accelerometer reading (a, b, c) */
+	public static final int SENSOR_ACCELERATION = 4;
+	/** Magnetic field reading (a, b, c) */
+	public static final int SENSOR_MAGNETIC_FIELD = 5;
+	public static final int TYPE_COUNT = 6;
+
+	public static final int MAX_VALUES = 3;
+	private static final int[] VALUE_COUNTS = { 1, 0, 2, 0, 3, 3 };
+	private static final boolean[] REPLACES_PENDING = { false, false, false, false, true, true };
+
+	/**
+	 * Whatever applies the events, i.e. the simulation.
+	 */
+	public interface Handler {
+		void onInput(int type, float a, float b, float c);
+	}
+
+	//Guarded by this
+	private int[] types = new int[16];
+	private float[] values = new float[16 * MAX_VALUES];
+	private int count;
+	//Per type, where its pending event is if REPLACES_PENDING, or -1
+	private final int[] pendingIndex = { -1, -1, -1, -1, -1, -1 };
+
+	//Events being handled, swapped with the arrays above so posting can carry on meanwhile
+	private int[] drainTypes = new int[16];
+	private float[] drainValues = new float[16 * MAX_VALUES];
+
+	/**
+	 * Number of floats used by events of the given type
+	 */
+	public static int getValueCount(int type) {
+		return VALUE_COUNTS[type];
+	}
+
+	public void post(int type) {
+		post(type, 0, 0, 0);
+	}
+
+	public void post(int type, float a) {
+		post(type, a, 0, 0);
+	}
+
+	public void post(int type, float a, float b) {
+		post(type, a, b, 0);
+	}
+
+	public synchronized void post(int type, float a, float b, float c) {
+		if (type < 0 || type >= TYPE_COUNT) {
+			throw new IllegalArgumentException("Unknown input type " + type);
+		}
+		if (REPLACES_PENDING[type] && pendingIndex[type] >= 0) {
+			int v = pendingIndex[type] * MAX_VALUES;
+			values[v] = a;
+			values[v + 1] = b;
+			values[v + 2] = c;
+			return;
+		}
+		if (count == types.length) {
+			int[] biggerTypes = new int[count * 2];
+			System.arraycopy(types, 0, biggerTypes, 0, count);
+			types = biggerTypes;
+			float[] biggerValues = new float[count * 2 * MAX_VALUES];
+			System.arraycopy(values, 0, biggerValues, 0, count * MAX_VALUES);
+			values = biggerValues;
+		}
+		types[count] = type;
+		values[count * MAX_VALUES] = a;
+		values[count * MAX_VALUES + 1] = b;
+		values[count * MAX_VALUES + 2] = c;
+		if (REPLACES_PENDING[type]) {
+			pendingIndex[type] = count;
+		}
+		count++;
+	}
+
+	/**
+	 * Hands every event posted so far to the handler, in the order posted.
+	 * Only one thread may drain a queue.
+	 * @return Number of events handled
+	 */
+	public int drain(Handler handler) {
+		int drained;
+		int[] drainedTypes;
+		float[] drainedValues;
+		synchronized (this) {
+			drained = count;
+			if (drained == 0) {
+				return 0;
+			}
+			drainedTypes = types;
+			drainedValues = values;
+			types = (drainTypes.length >= types.length) ? drainTypes : new int[types.length];
+			values = (drainValues.length >= values.length) ? drainValues : new float[values.length];
+			count = 0;
+			for (int i = 0; i < TYPE_COUNT; i++) {
+				pendingIndex[i] = -1;
+			}
+		}
+
+		for (int i = 0; i < drained; i++) {
+			int v = i * MAX_VALUES;
+			handler.onInput(drainedTypes[i], drainedValues[v], drainedValues[v + 1], drainedValues[v + 2]);
+		}
+		drainTypes = drainedTypes;
+		drainValues = drainedValues;
+		return drained;
+	}
+}
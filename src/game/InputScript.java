@@ -0,0 +1,16 @@
+package game;
+
+import objects.GameObject;
+
+/**
+ * Player input decided by code rather than a touch screen, for running rides
+ * without anyone playing: bots, tuning runs and benchmarks.
+ */
+public interface InputScript {
+	
+	/**
+	 * Called at the start of every tick, before physics.
+	 * @param tick Number of ticks run so far
+	 */
+	void apply(long tick, GameObject player);
+}
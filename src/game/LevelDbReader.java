@@ -1,46 +1,65 @@
 package game;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 
 import android.content.Context;
-import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
-public class LevelDbReader extends SQLiteOpenHelper {
+public class LevelDbReader extends SQLiteOpenHelper implements LevelStore {
 	private static final String DATABASE_NAME = "bikerbob.db";
 	private static final int DATABASE_VERSION = 1;
+	public static final String SEED_ASSET_NAME = "level_seed.sql";
+	private static final String SELECT_POINTS_QUERY = "SELECT points FROM level WHERE level_number = ?";
+	
+	private final Context context;
+	//Compiled once, then rebound for each level
+	private SQLiteStatement selectPoints;
 
 	public LevelDbReader(Context context) {
 		super(context, DATABASE_NAME, null, DATABASE_VERSION);
+		this.context = context;
 	}
 
 	/**
-	 * TODO: read statements from files.
+	 * Runs the statements in the seed file, which tools.LevelCompiler also
+	 * compiles into the binary level pack.
 	 * TODO: find out how to include a populated db file in assets/
 	 * and query it directly
 	 */
 	@Override
 	public void onCreate(SQLiteDatabase db) {
-		final String CREATE_TABLE_STATEMENT = 
-				"CREATE TABLE level ("
-				+ "id INTEGER PRIMARY KEY,"
-				+ "level_number INTEGER NOT NULL,"
-				+ "points text NOT NULL"
-				+ ")";
-		
-		db.execSQL(CREATE_TABLE_STATEMENT);
+		String seed;
+		try {
+			seed = readAsset(SEED_ASSET_NAME);
+		} catch (IOException e) {
+			throw new RuntimeException("Could not read " + SEED_ASSET_NAME, e);
+		}
 		
-		final String INSERT_LEVELS_STATEMENT =
-				"INSERT INTO level (level_number, points) VALUES (1,"
-				+ "\'1.0f 1.0f 0.0f,"
-				+ "-0.0f -0.0f 0.0f,"
-				+ "-1.0f -1.0f 0.0f,"
-				+ "-2.0f -1.0f 0.0f,"
-				+ "-2.5f -0.5f 0.0f,"
-				+ "-50f -50f 0.0f')";
-		db.execSQL(INSERT_LEVELS_STATEMENT);
+		//Statements end with a semicolon at the end of a line
+		for (String statement : seed.split(";\\s*(\\n|$)")) {
+			if (statement.trim().length() > 0) {
+				db.execSQL(statement);
+			}
+		}
+	}
+	
+	private String readAsset(String name) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(context.getAssets().open(name), "UTF-8"));
+		try {
+			StringBuilder sb = new StringBuilder();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				sb.append(line).append('\n');
+			}
+			return sb.toString();
+		} finally {
+			reader.close();
+		}
 	}
 
 	@Override
@@ -49,55 +68,33 @@ public class LevelDbReader extends SQLiteOpenHelper {
 		onCreate(db);
 	}
 	
-	public float[] readLevel(int levelNum) {
-		final String GET_LEVEL_QUERY = String.format(
-				"SELECT points FROM level WHERE level_number = %s", levelNum);
-				
-		SQLiteDatabase db = getReadableDatabase();
-		Cursor cursor = db.rawQuery(GET_LEVEL_QUERY, null);
-		if (cursor != null) {
-			cursor.moveToFirst();
-			String pointsStr = cursor.getString(0);
-			return getGlPointsArrayFromString(pointsStr);
-		}
-		return null;
-	}
-
 	/**
-	 * Read ground points from the string obtained from the db.
-	 * Points consist of 3 floats separated by spaces.
-	 * Points are separated by commas.
-	 * @param pointsStr
-	 * @return
+	 * Reads on the calling thread, opening the database if need be; use a
+	 * LevelRepository to keep that off the GL thread.
 	 */
-	private float[] getGlPointsArrayFromString(String pointsStr) {
-		List<Float> pointCoords = new ArrayList<Float>();
-		
-		String[] points = pointsStr.split(",");
-		for (String point : points) {
-			String[] parts = point.split(" ");
-			Float x = Float.valueOf(parts[0]);
-			Float y = Float.valueOf(parts[1]);
-			Float z = Float.valueOf(parts[2]);
-			
-			pointCoords.add(x);
-			pointCoords.add(y);
-			pointCoords.add(z);
-			
-			if (pointCoords.size() > 3) {
-				int addAgainIndex = pointCoords.size() - 3;
-				pointCoords.add(pointCoords.get(addAgainIndex));
-				pointCoords.add(pointCoords.get(addAgainIndex + 1));
-				pointCoords.add(pointCoords.get(addAgainIndex + 2));
-			}
+	public synchronized String readPoints(int levelNumber) {
+		if (selectPoints == null) {
+			selectPoints = getReadableDatabase().compileStatement(SELECT_POINTS_QUERY);
 		}
-		
-		//Because java:
-		float[] pointCoordsAsPrimitives = new float[pointCoords.size()];
-		for (int i = 0; i < pointCoords.size(); i++) {
-			pointCoordsAsPrimitives[i] = pointCoords.get(i).floatValue();
+		selectPoints.bindLong(1, levelNumber);
+		try {
+			return selectPoints.simpleQueryForString();
+		} catch (SQLiteDoneException e) {
+			return null;	//No such level
 		}
-		
-		return pointCoordsAsPrimitives;
+	}
+	
+	public float[] readLevel(int levelNum) {
+		String pointsStr = readPoints(levelNum);
+		return (pointsStr == null) ? null : LevelPointsParser.getGlPointsArrayFromString(pointsStr);
+	}
+	
+	@Override
+	public synchronized void close() {
+		if (selectPoints != null) {
+			selectPoints.close();
+			selectPoints = null;
+		}
+		super.close();
 	}
 }
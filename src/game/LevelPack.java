@@ -0,0 +1,148 @@
+package game;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Compiled levels, in a binary file that can be memory mapped (or read in one
+ * go) and handed straight to GL without any parsing. Built offline by
+ * tools.LevelCompiler.
+ *
+ * Layout, all little-endian:
+ * <pre>
+ * header:  int magic ("BBLV"), int version, int levelCount
+ * index:   levelCount * (int levelNumber, int byteOffset, int floatCount)
+ * data:    for each level, floatCount floats of x, y, z vertices
+ * </pre>
+ * The vertices are line segments as pairs of points, the same as
+ * LevelDbReader.readLevel returns. byteOffset is from the start of the file
+ * and always a multiple of 4. Little-endian is the native order on Android
+ * devices, so the vertex buffers can go to glVertexAttribPointer as they are.
+ */
+public class LevelPack {
+	public static final int MAGIC = 0x564C4242;	//"BBLV" read little-endian
+	public static final int VERSION = 1;
+	public static final int HEADER_BYTES = 3 * 4;
+	public static final int INDEX_ENTRY_BYTES = 3 * 4;
+
+	private final ByteBuffer data;
+	private final int levelCount;
+
+	/**
+	 * @param data The whole file. Read from its start, whatever its position.
+	 */
+	public LevelPack(ByteBuffer data) throws IOException {
+		this.data = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		this.data.position(0);
+
+		if (this.data.limit() < HEADER_BYTES || this.data.getInt(0) != MAGIC) {
+			throw new IOException("Not a level pack");
+		}
+		int version = this.data.getInt(4);
+		if (version != VERSION) {
+			throw new IOException("Unsupported level pack version " + version);
+		}
+		levelCount = this.data.getInt(8);
+		if (levelCount < 0 || HEADER_BYTES + levelCount * INDEX_ENTRY_BYTES > this.data.limit()) {
+			throw new IOException("Level pack index is truncated");
+		}
+	}
+
+	/**
+	 * Maps the file read only, so levels are paged in as they're used.
+	 */
+	public static LevelPack map(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			return new LevelPack(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			raf.close();	//The mapping outlives the file
+		}
+	}
+
+	/**
+	 * Reads a whole pack into a direct buffer, for when it can't be mapped
+	 * (e.g. a compressed asset). Doesn't close in.
+	 */
+	public static LevelPack read(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 * 1024);
+		byte[] chunk = new byte[16 * 1024];
+		int n;
+		while ((n = in.read(chunk)) >= 0) {
+			bytes.write(chunk, 0, n);
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.size());
+		buffer.put(bytes.toByteArray());
+		buffer.position(0);
+		return new LevelPack(buffer);
+	}
+
+	public int getLevelCount() {
+		return levelCount;
+	}
+
+	/**
+	 * Level number of the level at position i in the index
+	 */
+	public int getLevelNumber(int i) {
+		return data.getInt(indexEntry(i));
+	}
+
+	public boolean hasLevel(int levelNumber) {
+		return findLevel(levelNumber) >= 0;
+	}
+
+	/**
+	 * The level's vertices, as a view on the pack's own memory: no copy is made.
+	 * @return null if there's no such level
+	 */
+	public FloatBuffer getLevelVertices(int levelNumber) {
+		int i = findLevel(levelNumber);
+		if (i < 0) {
+			return null;
+		}
+		int entry = indexEntry(i);
+		int byteOffset = data.getInt(entry + 4);
+		int floatCount = data.getInt(entry + 8);
+
+		ByteBuffer level = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		level.position(byteOffset);
+		level.limit(byteOffset + floatCount * 4);
+		return level.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+	}
+
+	/**
+	 * As getLevelVertices, copied into an array.
+	 */
+	public float[] readLevel(int levelNumber) {
+		FloatBuffer vertices = getLevelVertices(levelNumber);
+		if (vertices == null) {
+			return null;
+		}
+		float[] result = new float[vertices.remaining()];
+		vertices.get(result);
+		return result;
+	}
+
+	private int findLevel(int levelNumber) {
+		for (int i = 0; i < levelCount; i++) {
+			if (getLevelNumber(i) == levelNumber) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int indexEntry(int i) {
+		return HEADER_BYTES + i * INDEX_ENTRY_BYTES;
+	}
+}
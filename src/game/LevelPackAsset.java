@@ -0,0 +1,55 @@
+package game;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+
+/**
+ * Opens the compiled levels shipped in assets/.
+ */
+public class LevelPackAsset {
+	//aapt compresses assets unless their extension is on its list of already
+	//compressed formats, and openFd can't open a compressed asset. Naming the
+	//pack as an mp3 keeps it stored as is, so it can be mapped.
+	public static final String ASSET_NAME = "levels.bin.mp3";
+	
+	private LevelPackAsset() {}
+	
+	/**
+	 * Maps the pack straight out of the APK if it was stored uncompressed,
+	 * otherwise reads it into memory in one go.
+	 */
+	public static LevelPack open(Context context) throws IOException {
+		AssetManager assets = context.getAssets();
+		
+		try {
+			AssetFileDescriptor fd = assets.openFd(ASSET_NAME);
+			try {
+				FileInputStream in = fd.createInputStream();
+				try {
+					FileChannel channel = in.getChannel();
+					return new LevelPack(channel.map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength()));
+				} finally {
+					in.close();
+				}
+			} finally {
+				fd.close();
+			}
+		} catch (FileNotFoundException e) {
+			//openFd can't open compressed assets
+		}
+		
+		InputStream in = assets.open(ASSET_NAME);
+		try {
+			return LevelPack.read(in);
+		} finally {
+			in.close();
+		}
+	}
+}
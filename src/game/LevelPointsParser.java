@@ -0,0 +1,283 @@
+package game;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Turns level point data into vertex arrays. Kept apart from LevelDbReader so
+ * it has no Android dependencies.
+ *
+ * Both formats are read by the same single pass scanner, straight into a
+ * primitive array: no splitting, no boxing and no intermediate strings for
+ * ordinary numbers.
+ */
+public class LevelPointsParser {
+
+	private static final int COORDS_PER_VERTEX = 3;
+
+	private LevelPointsParser() {}
+
+	/**
+	 * Read ground points from the string obtained from the db.
+	 * Points consist of 3 floats separated by spaces.
+	 * Points are separated by commas.
+	 * @param pointsStr
+	 * @return Vertices for GL_LINES: the first point, then every later point
+	 * twice, so each point ends one segment and starts the next.
+	 */
+	public static float[] getGlPointsArrayFromString(String pointsStr) {
+		Scanner scanner = new Scanner(pointsStr);
+		//Roughly right for typical points ("-12.5f 3.25f 0.0f," duplicated);
+		//grows if the numbers are shorter
+		FloatArray coords = new FloatArray(pointsStr.length() / 3 + COORDS_PER_VERTEX);
+
+		boolean firstPoint = true;
+		while (scanner.skipSeparators()) {
+			float x = scanner.nextFloat();
+			float y = scanner.nextCoord();
+			float z = scanner.nextCoord();
+
+			coords.add(x, y, z);
+			if (!firstPoint) {
+				coords.add(x, y, z);
+			}
+			firstPoint = false;
+		}
+
+		return coords.toArray();
+	}
+
+	/**
+	 * Reads levels in the levels.txt format: a "Level n:" line, then C style
+	 * float literals ("1.0f,") separated by commas and whitespace. The points
+	 * are already listed as segments, so are returned as they are.
+	 * @return Level number -> vertices, in level number order. A level that
+	 * appears twice keeps its last definition.
+	 */
+	public static Map<Integer, float[]> parseLevelsText(String text) {
+		Map<Integer, float[]> levels = new TreeMap<Integer, float[]>();
+		Scanner scanner = new Scanner(text);
+
+		int levelNumber = -1;
+		FloatArray coords = null;
+		while (scanner.skipSeparators()) {
+			if (scanner.atNumber()) {
+				if (coords == null) {
+					throw scanner.error("Points before the first \"Level n:\" line");
+				}
+				coords.add(scanner.nextFloat());
+				continue;
+			}
+
+			scanner.expectWord("Level");
+			scanner.skipSeparators();
+			int nextLevelNumber = (int) scanner.nextFloat();
+			scanner.expect(':');
+
+			if (coords != null) {
+				levels.put(levelNumber, coords.toArray());
+			}
+			levelNumber = nextLevelNumber;
+			coords = new FloatArray(256);
+		}
+		if (coords != null) {
+			levels.put(levelNumber, coords.toArray());
+		}
+
+		return levels;
+	}
+
+	/**
+	 * Reads numbers out of a string one char at a time.
+	 */
+	private static final class Scanner {
+		//Powers of ten that are exact as floats
+		private static final float[] POWERS_OF_TEN = {
+			1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f };
+		//Largest mantissa that's exact as a float
+		private static final long MAX_FAST_MANTISSA = 1 << 24;
+		//Fewer digits than this can't overflow the mantissa's long
+		private static final int MAX_MANTISSA_DIGITS = 18;
+
+		private final String text;
+		private final int length;
+		private int pos;
+
+		Scanner(String text) {
+			this.text = text;
+			this.length = text.length();
+		}
+
+		/**
+		 * Skips whitespace and commas.
+		 * @return False if there's nothing left
+		 */
+		boolean skipSeparators() {
+			while (pos < length) {
+				char c = text.charAt(pos);
+				if (c != ',' && !Character.isWhitespace(c)) {
+					return true;
+				}
+				pos++;
+			}
+			return false;
+		}
+
+		boolean atNumber() {
+			char c = text.charAt(pos);
+			return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.';
+		}
+
+		/**
+		 * The rest of a point: skips to and reads the next number, which must be there.
+		 */
+		float nextCoord() {
+			if (!skipSeparators()) {
+				throw error("Point is missing a coordinate");
+			}
+			return nextFloat();
+		}
+
+		/**
+		 * Reads a float literal, with an optional trailing f.
+		 * Short literals (the usual case) are converted directly; anything
+		 * longer or with an exponent goes through Float.parseFloat. Either way
+		 * the result is the same as Float.parseFloat's.
+		 */
+		float nextFloat() {
+			int start = pos;
+			boolean negative = false;
+			char c = (pos < length) ? text.charAt(pos) : 0;
+			if (c == '-' || c == '+') {
+				negative = (c == '-');
+				pos++;
+			}
+
+			long mantissa = 0;
+			int digits = 0;
+			int fractionDigits = 0;
+			boolean seenPoint = false;
+			while (pos < length) {
+				c = text.charAt(pos);
+				if (c >= '0' && c <= '9') {
+					mantissa = mantissa * 10 + (c - '0');
+					digits++;
+					if (seenPoint) {
+						fractionDigits++;
+					}
+				} else if (c == '.' && !seenPoint) {
+					seenPoint = true;
+				} else {
+					break;
+				}
+				pos++;
+			}
+			if (digits == 0) {
+				throw error("Expected a number");
+			}
+
+			float value;
+			boolean exponent = pos < length && (text.charAt(pos) == 'e' || text.charAt(pos) == 'E');
+			if (exponent || digits > MAX_MANTISSA_DIGITS || mantissa > MAX_FAST_MANTISSA
+					|| fractionDigits >= POWERS_OF_TEN.length) {
+				value = slowFloat(start);
+			} else {
+				//mantissa and the power of ten are both exact floats, so a single
+				//float division rounds correctly, exactly as parseFloat does.
+				//Going through double would round twice.
+				value = mantissa / POWERS_OF_TEN[fractionDigits];
+				if (negative) {
+					value = -value;
+				}
+			}
+
+			if (pos < length && (text.charAt(pos) == 'f' || text.charAt(pos) == 'F')) {
+				pos++;
+			}
+			if (pos < length && Character.isLetterOrDigit(text.charAt(pos))) {
+				throw error("Unexpected character after number");
+			}
+			return value;
+		}
+
+		private float slowFloat(int start) {
+			pos = start;
+			while (pos < length) {
+				char c = text.charAt(pos);
+				if ((c >= '0' && c <= '9') || c == '.' || c == '-' || c == '+' || c == 'e' || c == 'E') {
+					pos++;
+				} else {
+					break;
+				}
+			}
+			try {
+				return Float.parseFloat(text.substring(start, pos));
+			} catch (NumberFormatException e) {
+				pos = start;
+				throw error("Bad number");
+			}
+		}
+
+		void expectWord(String word) {
+			if (!text.regionMatches(true, pos, word, 0, word.length())) {
+				throw error("Expected \"" + word + "\"");
+			}
+			pos += word.length();
+		}
+
+		void expect(char c) {
+			if (pos >= length || text.charAt(pos) != c) {
+				throw error("Expected '" + c + "'");
+			}
+			pos++;
+		}
+
+		IllegalArgumentException error(String message) {
+			return new IllegalArgumentException(message + " at char " + pos);
+		}
+	}
+
+	/**
+	 * Growable float[]
+	 */
+	private static final class FloatArray {
+		private float[] values;
+		private int size;
+
+		FloatArray(int initialCapacity) {
+			values = new float[Math.max(initialCapacity, COORDS_PER_VERTEX)];
+		}
+
+		void add(float value) {
+			if (size == values.length) {
+				grow(1);
+			}
+			values[size++] = value;
+		}
+
+		void add(float x, float y, float z) {
+			if (size + COORDS_PER_VERTEX > values.length) {
+				grow(COORDS_PER_VERTEX);
+			}
+			values[size] = x;
+			values[size + 1] = y;
+			values[size + 2] = z;
+			size += COORDS_PER_VERTEX;
+		}
+
+		private void grow(int needed) {
+			float[] bigger = new float[Math.max(values.length * 2, size + needed)];
+			System.arraycopy(values, 0, bigger, 0, size);
+			values = bigger;
+		}
+
+		float[] toArray() {
+			if (size == values.length) {
+				return values;
+			}
+			float[] result = new float[size];
+			System.arraycopy(values, 0, result, 0, size);
+			return result;
+		}
+	}
+}
@@ -0,0 +1,177 @@
+package game;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Parsed levels, read from a LevelStore on a background thread and kept in a
+ * small LRU cache. Getting a level also starts loading the one after it, so
+ * by the time the player finishes a level the next is usually already parsed.
+ *
+ * All store access happens on the one loader thread, so the store doesn't
+ * need to be thread safe and the database is never opened on the GL thread.
+ *
+ * The vertex arrays handed out are shared with the cache and must not be modified.
+ */
+public class LevelRepository {
+	public static final int DEFAULT_CACHE_SIZE = 4;
+
+	private final LevelStore store;
+	private final ExecutorService loader;
+
+	//Guarded by this
+	private final LinkedHashMap<Integer, float[]> cache;
+	private final Map<Integer, Future<float[]>> pending = new HashMap<Integer, Future<float[]>>();
+	private int hitCount;
+	private int missCount;
+	private boolean closed;
+
+	public LevelRepository(LevelStore store) {
+		this(store, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * @param cacheSize Max number of parsed levels kept
+	 */
+	public LevelRepository(LevelStore store, final int cacheSize) {
+		this.store = store;
+		this.cache = new LinkedHashMap<Integer, float[]>(cacheSize * 2, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, float[]> eldest) {
+				return size() > cacheSize;
+			}
+		};
+		this.loader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "LevelLoader");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Returns the level's vertices, waiting for them to load if they're not
+	 * cached, and starts preloading the next level.
+	 * @return null if there's no such level
+	 * @throws IllegalStateException If the repository is closed, before or while waiting
+	 */
+	public float[] getLevel(int levelNumber) {
+		float[] level;
+		Future<float[]> loading;
+		synchronized (this) {
+			checkOpen();
+			level = cache.get(levelNumber);
+			if (level != null) {
+				hitCount++;
+			} else {
+				missCount++;
+			}
+			loading = (level == null) ? load(levelNumber) : null;
+		}
+
+		if (loading != null) {
+			level = await(loading);
+		}
+		preload(levelNumber + 1);
+		return level;
+	}
+
+	/**
+	 * Starts loading the level in the background if it isn't cached or loading
+	 * already. Does nothing once the repository is closed.
+	 */
+	public synchronized void preload(int levelNumber) {
+		if (!closed && !cache.containsKey(levelNumber)) {
+			load(levelNumber);
+		}
+	}
+
+	public synchronized boolean isCached(int levelNumber) {
+		return cache.containsKey(levelNumber);
+	}
+
+	public synchronized int getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized int getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Stops the loader thread and cancels the loads still pending, so nothing
+	 * waiting for them blocks forever. Doesn't close the store.
+	 */
+	public void close() {
+		synchronized (this) {
+			closed = true;
+			for (Future<float[]> loading : pending.values()) {
+				loading.cancel(true);
+			}
+			pending.clear();
+		}
+		loader.shutdownNow();
+	}
+
+	private void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("Level repository is closed");
+		}
+	}
+
+	private synchronized Future<float[]> load(final int levelNumber) {
+		checkOpen();
+		Future<float[]> loading = pending.get(levelNumber);
+		if (loading != null) {
+			return loading;
+		}
+
+		loading = loader.submit(new Callable<float[]>() {
+			public float[] call() {
+				try {
+					String points = store.readPoints(levelNumber);
+					float[] level = (points == null) ? null : LevelPointsParser.getGlPointsArrayFromString(points);
+
+					synchronized (LevelRepository.this) {
+						if (level != null) {
+							cache.put(levelNumber, level);
+						}
+					}
+					return level;
+				} finally {
+					synchronized (LevelRepository.this) {
+						pending.remove(levelNumber);
+					}
+				}
+			}
+		});
+		pending.put(levelNumber, loading);
+		return loading;
+	}
+
+	private static float[] await(Future<float[]> loading) {
+		try {
+			return loading.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while loading level");
+		} catch (CancellationException e) {
+			throw new IllegalStateException("Level repository was closed while loading");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+}
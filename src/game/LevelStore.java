@@ -0,0 +1,12 @@
+package game;
+
+/**
+ * Where levels are stored, as the points strings read by LevelPointsParser.
+ */
+public interface LevelStore {
+	
+	/**
+	 * @return The level's points, or null if there's no such level
+	 */
+	String readPoints(int levelNumber);
+}
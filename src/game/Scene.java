@@ -1,98 +1,262 @@
 package game;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
+import core.FrameProfiler;
+import core.TimeSource;
 import display.MyRenderer;
+import display.TextureManager;
+import input.InputManager;
+import objects.AtlasRegion;
 import objects.GameObject;
-import objects.Ground;
 import objects.Pointf;
-import physics.PhysicsHandler;
+import objects.SpriteAtlas;
+import android.graphics.Bitmap;
+import android.util.Log;
 
+/**
+ * Draws the simulation, plus the scenery that isn't part of it. The
+ * simulation runs on a SimulationThread; the scene only draws the snapshots
+ * it publishes, so it never touches the simulation's objects.
+ */
 public class Scene {
+	/** The last ride's input, in the app's files dir; replay with tools.ReplayPlayer */
+	public static final String RIDE_LOG_FILE_NAME = "last_ride.inputlog";
+	private static final float DIST_FROM_OBJ_CENTRE_TO_LEFT_SCREEN_EDGE = 1.5f;
+	
 	private MyRenderer renderer;
+	private TextureManager textureManager;
+	//The atlas page each sprite holds a texture reference to
+	private Map<GameObject, String> spritePages;
+	//Sprites for the simulation's bodies, in the same order, moved to match each snapshot
 	private List<GameObject> gameObjects;
+	private List<GameObject> scenery;
 	public static final int FLOOR_VAL_Y_IN_GRID_COORDS = 5;
 	
+	private Simulation simulation;
+	private SimulationThread simulationThread;
+	private TimeSource timeSource;
+	private TerrainProducer terrainProducer;
+	private InputLog.Recorder rideRecorder;
 	private GameObject player;
-	private GroundGenerator groundGen;
-	private Ground ground;
 	private GameObject background;
 	private GameObject foreground;
-	
-	private PhysicsHandler physicsHandler;
+	private float[] groundColour;
 	
 	public Scene() {
 		renderer = MyRenderer.getInstance();
+		textureManager = renderer.getTextureManager();
+		spritePages = new HashMap<GameObject, String>();
 		gameObjects = new ArrayList<GameObject>();
-		physicsHandler = PhysicsHandler.getInstance();
-		groundGen = new GroundGenerator();
+		scenery = new ArrayList<GameObject>();
+		//Terrain is generated on its own thread, so a frame never waits for it
+		long seed = new Random().nextLong();
+		terrainProducer = new TerrainProducer(new ChunkedGroundGenerator(seed));
+		timeSource = TimeSource.SYSTEM;
+		simulation = new Simulation(timeSource, terrainProducer);
+		rideRecorder = simulation.startRecording(seed);
+		InputManager.setInputQueue(simulation.getInputQueue());
+		groundColour = simulation.getGround().getColor();
 		
 		createBackground();
 		createForeground();
-		createGround();
 		createPlayer();
+		
+		simulationThread = new SimulationThread(simulation, getGroundMarginX());
+		simulationThread.start();
 	}
 	
+	/**
+	 * The player as drawn. The simulation's player is the first body.
+	 */
 	private void createPlayer() {
 		player = new GameObject();
-		player.loadTexture("biker");
-		player.translate(0f, 1f, 0);
+		setSprite(player, SpriteAtlas.BIKER);
 		gameObjects.add(player);
 	}
 	
 	private void createBackground() {
 		background = new GameObject();
-		background.loadTexture("background1");
+		setSprite(background, SpriteAtlas.BACKGROUND1);
 		background.scale(10, 10, 10);	//TODO: scale based on screen height/width so it fills screen
 		background.translate(0, 4.5f, 0);	//1/2 bg image height - 0.5 (due to ground being 0.5 below player center)
-		gameObjects.add(background);
+		scenery.add(background);
 	}
 	
 	private void createForeground() {
 		foreground = new GameObject();
-		foreground.loadTexture("foreground1");
+		setSprite(foreground, SpriteAtlas.FOREGROUND1);
 		foreground.scale(100, 10, 10);	//TODO: scale based on screen height/width so it fills screen
 		foreground.translate(0, -5.5f, 0);	//1/2 bg image height + 0.5 (due to ground being 0.5 below player center)
-		gameObjects.add(foreground);
+		scenery.add(foreground);
 	}
 	
-	private void createGround() {
-		ground = groundGen.generateGround(new Pointf(0,0,0));
+	/**
+	 * Draw obj with a sprite from the texture atlas, releasing the page of the
+	 * sprite it had before, if any
+	 */
+	private void setSprite(GameObject obj, AtlasRegion region) {
+		//Opaque pages don't need an alpha channel, so 16 bit is plenty
+		Bitmap.Config config = region.isOpaque() ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+		
+		//Acquire before releasing, so a page shared by both sprites isn't evicted in between
+		int textureHandle = textureManager.acquire(region.getPage(), config);
+		String previousPage = spritePages.put(obj, region.getPage());
+		if (previousPage != null) {
+			textureManager.release(previousPage);
+		}
+		obj.setMesh(region.getMesh());
+		obj.setTextureDataHandle(textureHandle);
 	}
 	
-	public void draw() {		
-		for (int i = 0; i < gameObjects.size(); i++) {
+	/**
+	 * Drops the texture references of every sprite. GL thread only.
+	 */
+	private void releaseSprites() {
+		//A manager replaced along with a lost context only holds dead handles
+		if (textureManager == renderer.getTextureManager()) {
+			for (String page : spritePages.values()) {
+				textureManager.release(page);
+			}
+		}
+		spritePages.clear();
+	}
+	
+	/**
+	 * @param alpha How far between the snapshot's previous and current tick to draw objects (0 to 1)
+	 */
+	public void draw(WorldSnapshot snapshot, float alpha) {		
+		FrameProfiler profiler = simulation.getProfiler();
+		long drawStart = profiler.start();
+		
+		renderer.drawStaticSprites(scenery);
+		
+		renderer.beginSprites();
+		int count = Math.min(gameObjects.size(), snapshot.getBodyCount());
+		for (int i = 0; i < count; i++) {
 			GameObject obj = gameObjects.get(i);
 			
-			renderer.draw(obj);
+			obj.interpolateRenderTransform(snapshot.getPreviousTransform(i), snapshot.getTransform(i), alpha);
+			renderer.drawSprite(obj);
 		}
-		renderer.drawGroundPlane(ground);
+		renderer.endSprites();
+		
+		renderer.drawGroundPlane(snapshot, groundColour);
+		
+		profiler.end(FrameProfiler.PHASE_DRAW, drawStart);
 	}
 	
+	/**
+	 * Draws the latest tick the simulation thread has published. Render thread only.
+	 */
 	public void doCurrentFrame() {
-		try{
-			Thread.sleep(100);
-		} catch (Exception e){}
-        physicsHandler.update(player, this);
-		draw();
-		
-		Pointf lastGroundPoint = ground.getLastPoint();
-		if (player.getPosition().x > lastGroundPoint.x - 10) {
-			ground.addPoints(groundGen.generateGroundPoints(ground.getLastPoint()), player.getPosition());
+		simulationThread.setGroundMarginX(getGroundMarginX());
+		WorldSnapshot snapshot = simulationThread.getLatestSnapshot();
+		draw(snapshot, snapshot.getAlpha(timeSource.nanoTime()));
+	}
+	
+	/**
+	 * From the player to the far edge of the screen, whichever way the camera
+	 * is offset
+	 */
+	private float getGroundMarginX() {
+		float viewHalfWidth = renderer.getViewHalfWidth();
+		if (viewHalfWidth == 0) {
+			return Float.POSITIVE_INFINITY;	//Screen size not known yet, so copy all of it
 		}
+		return viewHalfWidth + DIST_FROM_OBJ_CENTRE_TO_LEFT_SCREEN_EDGE;
 	}
-
+	
+	/**
+	 * Follows the player as drawn, i.e. interpolated between ticks.
+	 */
 	public Pointf getCameraPosition() {
-		float DIST_FROM_OBJ_CENTRE_TO_LEFT_SCREEN_EDGE = 1.5f;
-		return new Pointf(player.getPosition().x + DIST_FROM_OBJ_CENTRE_TO_LEFT_SCREEN_EDGE, player.getPosition().y);
-	}
-
-	public Ground getGroundPlane() {
-		return ground;
+		return new Pointf(player.getRenderPositionX() + DIST_FROM_OBJ_CENTRE_TO_LEFT_SCREEN_EDGE, player.getRenderPositionY());
 	}
 	
+	/**
+	 * The player's sprite. Only its render transform (getRenderTransform(),
+	 * getRenderPositionX/Y()) is meaningful: it's where the player was last
+	 * drawn. Its own transform never moves. The simulation's player belongs to
+	 * the simulation thread.
+	 */
 	public GameObject getPlayer() {
 		return this.player;
 	}
+	
+	public FrameProfiler getProfiler() {
+		return simulation.getProfiler();
+	}
+	
+	/**
+	 * Runs on its own thread: from other threads, only post to its input queue
+	 * and read its profiler.
+	 */
+	public Simulation getSimulation() {
+		return simulation;
+	}
+	
+	public TerrainProducer getTerrainProducer() {
+		return terrainProducer;
+	}
+	
+	/**
+	 * Stops the simulation and saves the ride so far, in case the app is never
+	 * resumed. Call from the UI thread, not the GL thread.
+	 */
+	public void pause() {
+		InputManager.setInputQueue(null);	//The sensors carry on while paused, with nothing draining the queue
+		simulationThread.pause();
+		saveRideLog();
+	}
+	
+	public void resume() {
+		InputManager.setInputQueue(simulation.getInputQueue());
+		simulationThread.resume();
+	}
+	
+	/**
+	 * Stops the simulation's background threads, saves the ride's input and
+	 * releases the sprites' textures. GL thread only.
+	 */
+	public void close() {
+		InputManager.setInputQueue(null);
+		simulationThread.close();
+		simulation.close();
+		saveRideLog();
+		releaseSprites();
+	}
+	
+	/**
+	 * Writes the ride's input to the files dir, via a temporary file so a
+	 * previous save survives being killed part way through. The simulation must
+	 * be paused or closed.
+	 */
+	private void saveRideLog() {
+		File dir = renderer.getAppContext().getFilesDir();
+		File file = new File(dir, RIDE_LOG_FILE_NAME);
+		File tempFile = new File(dir, RIDE_LOG_FILE_NAME + ".tmp");
+		GameObject simulatedPlayer = simulation.getPlayer();
+		try {
+			FileOutputStream out = new FileOutputStream(tempFile);
+			try {
+				rideRecorder.writeTo(out, simulation.getTickCount(),
+						simulatedPlayer.getPositionX(), simulatedPlayer.getPositionY());
+			} finally {
+				out.close();
+			}
+			if (!tempFile.renameTo(file)) {
+				Log.e("Scene", "Couldn't replace " + file);
+			}
+		} catch (IOException e) {
+			Log.e("Scene", "Couldn't save ride log: " + e.getMessage());
+		}
+	}
 }
@@ -0,0 +1,267 @@
+package game;
+
+import java.util.List;
+import java.util.Random;
+
+import core.FrameProfiler;
+import core.TimeSource;
+import objects.GameObject;
+import objects.Ground;
+import physics.PhysicsConfig;
+import physics.PhysicsHandler;
+import physics.PhysicsWorld;
+
+/**
+ * The game world without any rendering: the player, the ground and the fixed
+ * timestep that drives them. Has no Android dependencies, so it can be stepped
+ * on a plain JVM as fast as the CPU allows via tick().
+ */
+public class Simulation {
+	public static final int TICKS_PER_SECOND = 20;
+	public static final int MAX_TICKS_PER_FRAME = 5;
+	
+	private final TimeSource timeSource;
+	private final FrameProfiler profiler;
+	private final FixedTimestep timestep;
+	private final PhysicsWorld physicsWorld;
+	private final GroundSource groundSource;
+	private final Ground ground;
+	private final GameObject player;
+	
+	private final InputQueue inputQueue = new InputQueue();
+	private final InputQueue.Handler inputHandler = new InputQueue.Handler() {
+		public void onInput(int type, float a, float b, float c) {
+			applyInput(type, a, b, c);
+		}
+	};
+	private InputLog.Recorder inputRecorder;
+	private InputScript inputScript;
+	private long tickCount;
+	
+	//Latest sensor readings, as x, y, z
+	private final float[] lastAcceleration = new float[3];
+	private final float[] lastMagneticField = new float[3];
+	
+	public Simulation() {
+		this(TimeSource.SYSTEM);
+	}
+	
+	/**
+	 * Endless random ground from a random seed
+	 */
+	public Simulation(TimeSource timeSource) {
+		this(timeSource, new ChunkedGroundGenerator(new Random().nextLong()));
+	}
+	
+	/**
+	 * @param groundSource Where the ground comes from, e.g. a ChunkedGroundGenerator
+	 * for endless random ground or a StreamingLevelSource for an authored level
+	 */
+	public Simulation(TimeSource timeSource, GroundSource groundSource) {
+		this(timeSource, groundSource, new PhysicsConfig());
+	}
+	
+	/**
+	 * Each simulation has its own physics, so any number can run at once on
+	 * different threads.
+	 */
+	public Simulation(TimeSource timeSource, GroundSource groundSource, PhysicsConfig physicsConfig) {
+		this.timeSource = timeSource;
+		this.profiler = new FrameProfiler(timeSource);
+		this.timestep = new FixedTimestep(TICKS_PER_SECOND, MAX_TICKS_PER_FRAME);
+		this.physicsWorld = new PhysicsWorld(new PhysicsHandler(physicsConfig));
+		this.groundSource = groundSource;
+		
+		this.ground = groundSource.createGround();
+		
+		this.player = new GameObject();
+		player.translate(0f, 1f, 0);
+		player.savePreviousTransform();
+		physicsWorld.addBody(player);
+	}
+	
+	/**
+	 * Runs all ticks that are due according to the time source.
+	 * @return Number of ticks run
+	 */
+	public int advance() {
+		int ticks = timestep.advance(timeSource.nanoTime());
+		for (int i = 0; i < ticks; i++) {
+			tick();
+		}
+		return ticks;
+	}
+	
+	/**
+	 * Advances the world by one fixed step, regardless of the time source.
+	 */
+	public void tick() {
+		inputQueue.drain(inputHandler);
+		if (inputScript != null) {
+			inputScript.apply(tickCount, player);
+		}
+		
+		List<GameObject> bodies = physicsWorld.getBodies();
+		for (int i = 0; i < bodies.size(); i++) {
+			bodies.get(i).savePreviousTransform();
+		}
+		
+		long physicsStart = profiler.start();
+		physicsWorld.step(ground, timestep.getTickSeconds());
+		profiler.end(FrameProfiler.PHASE_PHYSICS, physicsStart);
+		
+		long extensionStart = profiler.start();
+		if (groundSource.extendGround(ground, player)) {
+			profiler.end(FrameProfiler.PHASE_GROUND_EXTENSION, extensionStart);
+		}
+		
+		tickCount++;
+	}
+	
+	private void applyInput(int type, float a, float b, float c) {
+		if (inputRecorder != null) {
+			inputRecorder.record(tickCount, type, a, b, c);
+		}
+		
+		switch (type) {
+			case InputQueue.ACCELERATE:
+				player.getVelocity().x += a;
+				break;
+			case InputQueue.START_DRAG:
+				player.startDragging();
+				break;
+			case InputQueue.DRAG_BY:
+				if (player.isBeingDragged()) {
+					player.translate(-a, b, 0);	//Negate x so it increases to the right
+				}
+				break;
+			case InputQueue.END_DRAG:
+				if (player.isBeingDragged()) {
+					player.endDragging();
+				}
+				break;
+			case InputQueue.SENSOR_ACCELERATION:
+				set(lastAcceleration, a, b, c);
+				break;
+			case InputQueue.SENSOR_MAGNETIC_FIELD:
+				set(lastMagneticField, a, b, c);
+				break;
+		}
+	}
+	
+	private static void set(float[] reading, float x, float y, float z) {
+		reading[0] = x;
+		reading[1] = y;
+		reading[2] = z;
+	}
+	
+	/**
+	 * @return How far between the previous and current tick to draw objects (0 to 1)
+	 */
+	public float getAlpha() {
+		return timestep.getAlpha();
+	}
+	
+	/**
+	 * Time on the simulation's clock that the current tick's state is for
+	 */
+	public long getSimulatedNanos() {
+		return timestep.getSimulatedNanos();
+	}
+	
+	public long getTickNanos() {
+		return timestep.getTickNanos();
+	}
+	
+	/**
+	 * How long until advance() will have a tick to run, for sleeping until then
+	 */
+	public long getNanosUntilNextTick() {
+		return timestep.getNanosUntilNextTick(timeSource.nanoTime());
+	}
+	
+	/**
+	 * Forget the time since the last advance(), so the simulation carries on
+	 * from where it was after a pause instead of catching up.
+	 */
+	public void resetTimestep() {
+		timestep.reset();
+	}
+	
+	/**
+	 * Per-phase timings, shared with whatever renders this simulation.
+	 */
+	public FrameProfiler getProfiler() {
+		return profiler;
+	}
+	
+	public long getTickCount() {
+		return tickCount;
+	}
+	
+	public Ground getGround() {
+		return ground;
+	}
+	
+	public GameObject getPlayer() {
+		return player;
+	}
+	
+	/**
+	 * Where touch and sensor input goes. Safe to post to from any thread; events
+	 * take effect at the start of the next tick.
+	 */
+	public InputQueue getInputQueue() {
+		return inputQueue;
+	}
+	
+	/**
+	 * Starts recording every input event as it's applied, for replaying the ride later.
+	 * @param seed Seed of the terrain, stored with the input
+	 * @return The recording, finished by close()
+	 */
+	public InputLog.Recorder startRecording(long seed) {
+		inputRecorder = new InputLog.Recorder(seed, TICKS_PER_SECOND);
+		return inputRecorder;
+	}
+	
+	/**
+	 * Latest accelerometer reading posted, as x, y, z. Not used by the physics yet.
+	 */
+	public float[] getLastAcceleration() {
+		return lastAcceleration;
+	}
+	
+	/**
+	 * Latest magnetic field reading posted, as x, y, z. Not used by the physics yet.
+	 */
+	public float[] getLastMagneticField() {
+		return lastMagneticField;
+	}
+	
+	/**
+	 * @param inputScript Drives the player every tick, or null for none
+	 */
+	public void setInputScript(InputScript inputScript) {
+		this.inputScript = inputScript;
+	}
+	
+	/**
+	 * Everything that moves, starting with the player. Add bodies here to have
+	 * them collide with the ground and each other.
+	 */
+	public PhysicsWorld getPhysicsWorld() {
+		return physicsWorld;
+	}
+	
+	/**
+	 * Stops any background work done by the ground source, and finishes the
+	 * input recording if there is one.
+	 */
+	public void close() {
+		if (inputRecorder != null) {
+			inputRecorder.finish(tickCount, player.getPositionX(), player.getPositionY());
+		}
+		groundSource.close();
+	}
+}
@@ -0,0 +1,159 @@
+package game;
+
+import java.util.concurrent.locks.LockSupport;
+
+import core.FrameProfiler;
+import core.TripleBuffer;
+
+/**
+ * Runs a Simulation on its own thread, so ticking overlaps drawing instead of
+ * taking turns with it on the GL thread. After each batch of ticks the state
+ * is copied into a WorldSnapshot and published through a lock-free
+ * TripleBuffer; the renderer only ever reads the latest snapshot, never the
+ * simulation itself.
+ *
+ * Once started, the simulation belongs to this thread. Other threads may only
+ * post to its InputQueue and read its profiler.
+ */
+public class SimulationThread {
+	private static final long IDLE_CHECK_MILLIS = 10;	//In case the thread dies while waited for
+
+	private final Simulation simulation;
+	private final TripleBuffer<WorldSnapshot> snapshots;
+	private final Thread thread;
+
+	private volatile boolean closed;
+	private volatile boolean paused;
+	private volatile float groundMarginX;
+	private boolean wasPaused;	//Simulation thread only
+	//Whether the thread has stopped for a pause; guarded by idleLock
+	private final Object idleLock = new Object();
+	private boolean idle;
+
+	/**
+	 * Captures the simulation's current state as the first snapshot, so there's
+	 * always one to draw.
+	 * @param groundMarginX See setGroundMarginX()
+	 */
+	public SimulationThread(Simulation simulation, float groundMarginX) {
+		this.simulation = simulation;
+		this.groundMarginX = groundMarginX;
+
+		int groundCapacity = simulation.getGround().getCapacity();
+		this.snapshots = new TripleBuffer<WorldSnapshot>(new WorldSnapshot(groundCapacity),
+				new WorldSnapshot(groundCapacity), new WorldSnapshot(groundCapacity));
+		publishSnapshot();
+
+		this.thread = new Thread(new Runnable() {
+			public void run() {
+				runSimulation();
+			}
+		}, "Simulation");
+		thread.setDaemon(true);
+	}
+
+	public void start() {
+		thread.start();
+	}
+
+	/**
+	 * Render thread only. The snapshot stays unchanged until the next call.
+	 */
+	public WorldSnapshot getLatestSnapshot() {
+		return snapshots.getReadBuffer();
+	}
+
+	/**
+	 * @param groundMarginX How far either side of the player snapshots copy the
+	 * ground. Needs to reach the edges of the screen.
+	 */
+	public void setGroundMarginX(float groundMarginX) {
+		this.groundMarginX = groundMarginX;
+	}
+
+	/**
+	 * Stops ticking until resume(). No time passes in the simulation meanwhile.
+	 * Waits for the tick in progress, if any, so once this returns the
+	 * simulation may be read from the calling thread until resume().
+	 */
+	public void pause() {
+		paused = true;
+		LockSupport.unpark(thread);	//Rather than waiting out its sleep until the next tick
+		boolean interrupted = false;
+		synchronized (idleLock) {
+			while (!idle && thread.isAlive()) {
+				try {
+					idleLock.wait(IDLE_CHECK_MILLIS);
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public void resume() {
+		synchronized (idleLock) {
+			idle = false;	//So a pause() straight after waits for the thread again
+		}
+		paused = false;
+		LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Stops the thread and waits for it to finish its tick, after which the
+	 * simulation may be used from the calling thread again.
+	 */
+	public void close() {
+		closed = true;
+		LockSupport.unpark(thread);
+		boolean interrupted = false;
+		while (thread.isAlive()) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void runSimulation() {
+		while (!closed) {
+			if (paused) {
+				wasPaused = true;
+				synchronized (idleLock) {
+					idle = true;
+					idleLock.notifyAll();
+				}
+				LockSupport.park(this);	//Until resume() or close()
+				continue;
+			}
+			if (wasPaused) {
+				wasPaused = false;
+				simulation.resetTimestep();
+			}
+
+			if (simulation.advance() > 0) {
+				publishSnapshot();
+			}
+
+			long wait = simulation.getNanosUntilNextTick();
+			if (wait > 0) {
+				LockSupport.parkNanos(this, wait);
+			}
+		}
+	}
+
+	private void publishSnapshot() {
+		FrameProfiler profiler = simulation.getProfiler();
+		long start = profiler.start();
+		snapshots.getWriteBuffer().capture(simulation, groundMarginX);
+		snapshots.publish();
+		profiler.end(FrameProfiler.PHASE_SNAPSHOT, start);
+	}
+}
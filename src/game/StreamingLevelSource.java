@@ -0,0 +1,188 @@
+package game;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import objects.GameObject;
+import objects.Ground;
+import objects.Pointf;
+
+/**
+ * Streams an authored level into the ground a chunk at a time, so only the part
+ * of the level around the player is ever resident and loading doesn't depend on
+ * the level's length.
+ *
+ * A background thread reads chunks of segments from the level's vertices
+ * (usually a memory mapped LevelPack, so this is where the I/O happens) and
+ * queues a few ahead of the player. The game thread only ever polls that queue:
+ * if the next chunk isn't ready yet it tries again next tick rather than waiting.
+ * Ground left behind the player is evicted by the Ground itself as chunks arrive.
+ *
+ * The ground's ring is sized from the densest stretch of the level the player
+ * can have resident at once, found by one pass over the level's x values before
+ * the first chunk, so a chunk never pushes out ground still near the player. Should it not fit anyway, the chunk is held back until it does.
+ */
+public class StreamingLevelSource implements GroundSource {
+	public static final int DEFAULT_SEGMENTS_PER_CHUNK = 64;
+	public static final int DEFAULT_PREFETCH_CHUNKS = 2;
+	private static final float LOAD_DISTANCE_AHEAD = 20f;
+	private static final int COORDS_PER_VERTEX = 3;
+
+	//Queued after the last chunk
+	private static final float[] END_OF_LEVEL = new float[0];
+
+	private final FloatBuffer levelVertices;
+	private final int segmentsPerChunk;
+	private final BlockingQueue<float[]> readyChunks;
+	private final Thread prefetchThread;
+
+	private volatile boolean closed;
+	private boolean endReached;
+	private volatile int chunksMissed;	//Written by the simulation thread only, read from any
+	//Polled but not yet added, for lack of room in the ground
+	private float[] heldChunk;
+	//Ground capacity needed; written by the prefetch thread before queuing the first chunk
+	private int groundCapacity;
+
+	/**
+	 * @param levelVertices Line segments as pairs of x, y, z points, as from LevelPack.getLevelVertices
+	 */
+	public StreamingLevelSource(FloatBuffer levelVertices) {
+		this(levelVertices, DEFAULT_SEGMENTS_PER_CHUNK, DEFAULT_PREFETCH_CHUNKS);
+	}
+
+	/**
+	 * @param levelVertices Line segments as pairs of x, y, z points, as from LevelPack.getLevelVertices
+	 * @param segmentsPerChunk Segments read at a time
+	 * @param prefetchChunks Chunks read ahead of the one being played
+	 */
+	public StreamingLevelSource(FloatBuffer levelVertices, int segmentsPerChunk, int prefetchChunks) {
+		//Our own position and limit; only the prefetch thread reads from it
+		this.levelVertices = levelVertices.duplicate();
+		this.segmentsPerChunk = segmentsPerChunk;
+		this.readyChunks = new ArrayBlockingQueue<float[]>(prefetchChunks);
+
+		this.prefetchThread = new Thread(new Runnable() {
+			public void run() {
+				prefetch();
+			}
+		}, "LevelPrefetch");
+		prefetchThread.setDaemon(true);
+	}
+
+	/**
+	 * Starts prefetching and waits for the first chunk.
+	 */
+	public Ground createGround() {
+		prefetchThread.start();
+
+		float[] firstChunk;
+		try {
+			firstChunk = readyChunks.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while loading level");
+		}
+		if (firstChunk == END_OF_LEVEL) {
+			throw new IllegalArgumentException("Level has no segments");
+		}
+
+		List<Pointf> points = new ArrayList<Pointf>();
+		for (int i = 0; i < firstChunk.length; i += COORDS_PER_VERTEX) {
+			points.add(new Pointf(firstChunk[i], firstChunk[i + 1], firstChunk[i + 2]));
+		}
+		return new Ground(points, groundCapacity);
+	}
+
+	public boolean extendGround(Ground ground, GameObject player) {
+		if (endReached || player.getPositionX() <= ground.getLastPointX() - LOAD_DISTANCE_AHEAD) {
+			return false;
+		}
+
+		float[] chunk = (heldChunk != null) ? heldChunk : readyChunks.poll();
+		heldChunk = null;
+		if (chunk == null) {
+			chunksMissed++;	//Still loading; try again next tick
+			return false;
+		}
+		if (chunk == END_OF_LEVEL) {
+			endReached = true;
+			return false;
+		}
+		if (!ground.makeRoomFor(chunk.length / COORDS_PER_VERTEX, player.getPositionX())) {
+			heldChunk = chunk;	//Would evict ground near the player; try again once it has moved on
+			return false;
+		}
+
+		ground.addPoints(chunk, chunk.length, player.getPositionX());
+		return true;
+	}
+
+	/**
+	 * Times the player was close enough to need the next chunk before it had
+	 * been read. Non-zero means the prefetch isn't keeping up.
+	 */
+	public int getChunksMissed() {
+		return chunksMissed;
+	}
+
+	public void close() {
+		closed = true;
+		prefetchThread.interrupt();
+	}
+
+	private void prefetch() {
+		int vertexCount = levelVertices.limit() / COORDS_PER_VERTEX;
+		int verticesPerChunk = 2 * segmentsPerChunk;
+
+		//A chunk is added once the end of the ground is within LOAD_DISTANCE_AHEAD,
+		//and ground is kept back to EVICT_DISTANCE_BEHIND (plus the point before).
+		//Both counts are of vertices, which overestimates points as segments share them.
+		int span = densestSpan(vertexCount, LOAD_DISTANCE_AHEAD + Ground.EVICT_DISTANCE_BEHIND);
+		groundCapacity = span + 1 + verticesPerChunk;
+
+		try {
+			for (int first = 0; first < vertexCount && !closed; first += verticesPerChunk) {
+				readyChunks.put(readChunk(first, Math.min(verticesPerChunk, vertexCount - first)));
+			}
+			readyChunks.put(END_OF_LEVEL);
+		} catch (InterruptedException e) {
+			//Closed
+		}
+	}
+
+	/**
+	 * Most vertices within any stretch of the level width long. Levels run in
+	 * ascending x.
+	 */
+	private int densestSpan(int vertexCount, float width) {
+		int densest = 0;
+		int first = 0;
+		for (int last = 0; last < vertexCount; last++) {
+			//Levels are stored with x negated, so they run in descending stored x
+			float lastX = levelVertices.get(last * COORDS_PER_VERTEX);
+			while (levelVertices.get(first * COORDS_PER_VERTEX) - lastX > width) {
+				first++;
+			}
+			densest = Math.max(densest, last - first + 1);
+		}
+		return densest;
+	}
+
+	/**
+	 * Copies vertices out of the level, converted to world coordinates
+	 */
+	private float[] readChunk(int firstVertex, int vertexCount) {
+		float[] chunk = new float[vertexCount * COORDS_PER_VERTEX];
+		int offset = firstVertex * COORDS_PER_VERTEX;
+		for (int i = 0; i < chunk.length; i += COORDS_PER_VERTEX) {
+			chunk[i] = -levelVertices.get(offset + i);	//Levels are stored with x negated, as drawn
+			chunk[i + 1] = levelVertices.get(offset + i + 1);
+			chunk[i + 2] = levelVertices.get(offset + i + 2);
+		}
+		return chunk;
+	}
+}
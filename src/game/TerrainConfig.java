@@ -0,0 +1,84 @@
+package game;
+
+/**
+ * Tunable shape of the jumps made by ChunkedGroundGenerator. A generator copies
+ * these when it's created.
+ *
+ * Only the random extra added to each minimum can be changed. The minimums fix
+ * how many jumps fit in a chunk, and so the size of chunk buffers.
+ */
+public class TerrainConfig {
+	public static final float DEFAULT_MAX_DIST_TO_NEXT_JUMP = 10f;
+	public static final float DEFAULT_MAX_JUMP_ANGLE = 45f;
+	public static final float DEFAULT_MAX_JUMP_DISTANCE = 3f;
+	public static final float DEFAULT_MAX_SLOPE_DISTANCE = 1f;
+
+	private float maxDistToNextJump = DEFAULT_MAX_DIST_TO_NEXT_JUMP;
+	private float maxJumpAngle = DEFAULT_MAX_JUMP_ANGLE;
+	private float maxJumpDistance = DEFAULT_MAX_JUMP_DISTANCE;
+	private float maxSlopeDistance = DEFAULT_MAX_SLOPE_DISTANCE;
+
+	public float getMaxDistToNextJump() {
+		return maxDistToNextJump;
+	}
+
+	/**
+	 * @param maxDistToNextJump Most flat ground between jumps, beyond the minimum
+	 */
+	public TerrainConfig setMaxDistToNextJump(float maxDistToNextJump) {
+		this.maxDistToNextJump = checkNotNegative(maxDistToNextJump, "maxDistToNextJump");
+		return this;
+	}
+
+	public float getMaxJumpAngle() {
+		return maxJumpAngle;
+	}
+
+	/**
+	 * @param maxJumpAngle Steepest ramp, in degrees. Less than 90.
+	 */
+	public TerrainConfig setMaxJumpAngle(float maxJumpAngle) {
+		if (maxJumpAngle >= 90) {
+			throw new IllegalArgumentException("maxJumpAngle must be less than 90 degrees: " + maxJumpAngle);
+		}
+		this.maxJumpAngle = checkNotNegative(maxJumpAngle, "maxJumpAngle");
+		return this;
+	}
+
+	public float getMaxJumpDistance() {
+		return maxJumpDistance;
+	}
+
+	/**
+	 * @param maxJumpDistance Widest gap to jump, beyond the minimum
+	 */
+	public TerrainConfig setMaxJumpDistance(float maxJumpDistance) {
+		this.maxJumpDistance = checkNotNegative(maxJumpDistance, "maxJumpDistance");
+		return this;
+	}
+
+	public float getMaxSlopeDistance() {
+		return maxSlopeDistance;
+	}
+
+	/**
+	 * @param maxSlopeDistance Longest ramp, beyond the minimum
+	 */
+	public TerrainConfig setMaxSlopeDistance(float maxSlopeDistance) {
+		this.maxSlopeDistance = checkNotNegative(maxSlopeDistance, "maxSlopeDistance");
+		return this;
+	}
+
+	private static float checkNotNegative(float value, String name) {
+		if (value < 0) {
+			throw new IllegalArgumentException(name + " must not be negative: " + value);
+		}
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return "maxDistToNextJump=" + maxDistToNextJump + " maxJumpAngle=" + maxJumpAngle
+				+ " maxJumpDistance=" + maxJumpDistance + " maxSlopeDistance=" + maxSlopeDistance;
+	}
+}
@@ -0,0 +1,124 @@
+package game;
+
+import java.util.concurrent.locks.LockSupport;
+
+import core.SpscQueue;
+import objects.GameObject;
+import objects.Ground;
+
+/**
+ * Generates terrain on its own thread, ahead of the player, so the thread that
+ * ticks the simulation only ever copies finished chunks into the ground.
+ *
+ * Chunks come from a ChunkedGroundGenerator and are passed over in reusable
+ * blocks through a pair of lock-free single producer/single consumer queues:
+ * full blocks one way, empty ones back. Nothing is allocated once running, and
+ * the producer parks whenever it has run out of empty blocks to fill.
+ */
+public class TerrainProducer implements GroundSource {
+	public static final int DEFAULT_BLOCKS_AHEAD = 4;
+	private static final float EXTEND_DISTANCE_AHEAD = 10f;
+	private static final long IDLE_PARK_NANOS = 5000000;	//In case an unpark is missed
+
+	private static final class Block {
+		final float[] coords = new float[ChunkedGroundGenerator.MAX_POINTS_PER_CHUNK * 3];
+		int count;
+	}
+
+	private final ChunkedGroundGenerator generator;
+	private final SpscQueue<Block> readyBlocks;
+	private final SpscQueue<Block> emptyBlocks;
+	private final Thread producerThread;
+
+	private volatile boolean closed;
+	private long nextChunk;	//Producer thread only, once started
+	private volatile int starvedCount;	//Written by the simulation thread only, read from any
+
+	public TerrainProducer(ChunkedGroundGenerator generator) {
+		this(generator, DEFAULT_BLOCKS_AHEAD);
+	}
+
+	/**
+	 * @param blocksAhead Max number of generated chunks waiting to be used
+	 */
+	public TerrainProducer(ChunkedGroundGenerator generator, int blocksAhead) {
+		this.generator = generator;
+		this.readyBlocks = new SpscQueue<Block>(blocksAhead);
+		this.emptyBlocks = new SpscQueue<Block>(blocksAhead);
+		//As many blocks as the ready queue holds, so offering one to it never fails
+		for (int i = 0; i < readyBlocks.capacity(); i++) {
+			emptyBlocks.offer(new Block());
+		}
+
+		this.producerThread = new Thread(new Runnable() {
+			public void run() {
+				produce();
+			}
+		}, "TerrainProducer");
+		producerThread.setDaemon(true);
+	}
+
+	/**
+	 * Generates the first chunk on the calling thread, then starts producing the rest.
+	 */
+	public Ground createGround() {
+		Ground ground = generator.createGround();
+		nextChunk = 1;
+		producerThread.start();
+		return ground;
+	}
+
+	public boolean extendGround(Ground ground, GameObject player) {
+		if (player.getPositionX() <= ground.getLastPointX() - EXTEND_DISTANCE_AHEAD) {
+			return false;
+		}
+
+		Block block = readyBlocks.poll();
+		if (block == null) {
+			starvedCount++;	//Producer is behind; try again next tick
+			return false;
+		}
+		ground.addPoints(block.coords, block.count, player.getPositionX());
+
+		emptyBlocks.offer(block);
+		LockSupport.unpark(producerThread);
+		return true;
+	}
+
+	/**
+	 * Chunks generated and waiting to be used. Near getQueueCapacity() in steady
+	 * state; near zero means the producer can't keep up.
+	 */
+	public int getQueueDepth() {
+		return readyBlocks.size();
+	}
+
+	public int getQueueCapacity() {
+		return readyBlocks.capacity();
+	}
+
+	/**
+	 * Times ground was needed but no chunk was ready
+	 */
+	public int getStarvedCount() {
+		return starvedCount;
+	}
+
+	public void close() {
+		closed = true;
+		LockSupport.unpark(producerThread);
+	}
+
+	private void produce() {
+		while (!closed) {
+			Block block = emptyBlocks.poll();
+			if (block == null) {
+				LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+				continue;
+			}
+			block.count = generator.generateChunk(nextChunk, block.coords);
+			nextChunk++;
+			readyBlocks.offer(block);
+		}
+	}
+}
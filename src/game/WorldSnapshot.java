@@ -0,0 +1,141 @@
+package game;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.List;
+
+import objects.GameObject;
+import objects.Ground;
+import objects.Transform2D;
+
+/**
+ * Everything needed to draw one simulation tick, copied out of the simulation
+ * so it can be drawn on another thread while the next tick runs. Written by
+ * capture() on the simulation thread, then only read once published.
+ *
+ * Snapshots are reused through a TripleBuffer, so capturing doesn't allocate
+ * unless bodies have been added since the last time.
+ */
+public class WorldSnapshot {
+	private static final int COORDS_PER_VERTEX = 3;
+	private static final int BYTES_PER_FLOAT = 4;
+
+	private long tick;
+	private long timeNanos;
+	private long tickNanos;
+
+	//Each body's transform as of the previous and this tick, for interpolating
+	private int bodyCount;
+	private Transform2D[] previousTransforms = new Transform2D[0];
+	private Transform2D[] transforms = new Transform2D[0];
+
+	//The ground's points around the player, as GL vertex data
+	private final FloatBuffer groundVertices;
+	private int groundVertexCount;
+	private int groundTotalVertexCount;
+	private final float[] groundTransform = new float[16];
+
+	/**
+	 * @param groundCapacity Most points the simulation's ground holds
+	 */
+	public WorldSnapshot(int groundCapacity) {
+		groundVertices = ByteBuffer.allocateDirect(groundCapacity * COORDS_PER_VERTEX * BYTES_PER_FLOAT)
+				.order(ByteOrder.nativeOrder()).asFloatBuffer();
+	}
+
+	/**
+	 * Copies the simulation's current state. Simulation thread only.
+	 * @param groundMarginX How far either side of the player to copy the ground:
+	 * at least the distance from the player to the edge of the screen
+	 */
+	public void capture(Simulation simulation, float groundMarginX) {
+		tick = simulation.getTickCount();
+		timeNanos = simulation.getSimulatedNanos();
+		tickNanos = simulation.getTickNanos();
+
+		List<GameObject> bodies = simulation.getPhysicsWorld().getBodies();
+		bodyCount = bodies.size();
+		if (transforms.length < bodyCount) {
+			previousTransforms = grow(previousTransforms, bodyCount);
+			transforms = grow(transforms, bodyCount);
+		}
+		for (int i = 0; i < bodyCount; i++) {
+			GameObject body = bodies.get(i);
+			previousTransforms[i].set(body.getPreviousTransform2D());
+			transforms[i].set(body.getTransform2D());
+		}
+
+		//The player is drawn somewhere between its previous and current positions
+		GameObject player = simulation.getPlayer();
+		float playerX = player.getPositionX();
+		float previousPlayerX = player.getPreviousTransform2D().getX();
+		Ground ground = simulation.getGround();
+		int firstPoint = ground.getPointIndexBefore(Math.min(playerX, previousPlayerX) - groundMarginX);
+		int lastPoint = ground.getPointIndexAfter(Math.max(playerX, previousPlayerX) + groundMarginX);
+		groundVertexCount = lastPoint - firstPoint + 1;
+		ground.copyVertices(firstPoint, groundVertexCount, groundVertices);
+		groundTotalVertexCount = ground.getVertexCount();
+		System.arraycopy(ground.getTransform(), 0, groundTransform, 0, 16);
+	}
+
+	private static Transform2D[] grow(Transform2D[] transforms, int size) {
+		Transform2D[] grown = new Transform2D[size];
+		System.arraycopy(transforms, 0, grown, 0, transforms.length);
+		for (int i = transforms.length; i < size; i++) {
+			grown[i] = new Transform2D();
+		}
+		return grown;
+	}
+
+	public long getTick() {
+		return tick;
+	}
+
+	/**
+	 * @param nowNanos Current time on the simulation's clock
+	 * @return How far between the previous and this tick to draw objects (0 to 1)
+	 */
+	public float getAlpha(long nowNanos) {
+		float alpha = (float) (nowNanos - timeNanos) / tickNanos;
+		return Math.max(0, Math.min(alpha, 1));
+	}
+
+	/**
+	 * Number of bodies, in the order of the simulation's PhysicsWorld
+	 */
+	public int getBodyCount() {
+		return bodyCount;
+	}
+
+	public Transform2D getPreviousTransform(int body) {
+		return previousTransforms[body];
+	}
+
+	public Transform2D getTransform(int body) {
+		return transforms[body];
+	}
+
+	/**
+	 * The ground near the player, as a line strip of getGroundVertexCount()
+	 * vertices from the start of the buffer
+	 */
+	public FloatBuffer getGroundVertices() {
+		return groundVertices;
+	}
+
+	public int getGroundVertexCount() {
+		return groundVertexCount;
+	}
+
+	/**
+	 * Number of points the whole ground had, most of them not copied
+	 */
+	public int getGroundTotalVertexCount() {
+		return groundTotalVertexCount;
+	}
+
+	public float[] getGroundTransform() {
+		return groundTransform;
+	}
+}
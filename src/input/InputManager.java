@@ -1,5 +1,6 @@
 package input;
 
+import game.InputQueue;
 import objects.Vectorf;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
@@ -21,6 +22,16 @@ public class InputManager {
 
 	private static float[] lastAccel;
 	private static float[] lastMagneticField;
+	
+	//Where readings are also sent, so they're recorded with the rest of the input
+	private static volatile InputQueue inputQueue;
+
+	/**
+	 * @param queue Queue of the simulation being played, or null for none
+	 */
+	public static void setInputQueue(InputQueue queue) {
+		inputQueue = queue;
+	}
 
 	public static void readInputs() {
 		// TODO: controll movement etc from here
@@ -97,6 +108,13 @@ public class InputManager {
 		return true;
 	}
 
+	private static void post(int type, float[] values) {
+		InputQueue queue = inputQueue;
+		if (queue != null) {
+			queue.post(type, values[0], values[1], values[2]);
+		}
+	}
+
 	public static void initSensors(SensorManager sm) {
 		initAccelerometer(sm);
 		initMagneticFieldSensor(sm);
@@ -111,6 +129,7 @@ public class InputManager {
 
 			public void onSensorChanged(SensorEvent event) {
 				lastAccel = event.values;
+				post(InputQueue.SENSOR_ACCELERATION, event.values);
 			}
 		};
 		sm.registerListener(accelListener, accelerometer,
@@ -127,6 +146,7 @@ public class InputManager {
 
 			public void onSensorChanged(SensorEvent event) {
 				lastMagneticField = event.values;
+				post(InputQueue.SENSOR_MAGNETIC_FIELD, event.values);
 			}
 		};
 		sm.registerListener(magFieldListener, magneticFieldSensor,
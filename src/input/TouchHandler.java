@@ -2,7 +2,7 @@ package input;
 
 import objects.GameObject;
 import objects.Pointf;
-import objects.Vectorf;
+import game.InputQueue;
 import game.Scene;
 import display.MyRenderer;
 import android.opengl.Matrix;
@@ -10,6 +10,10 @@ import android.util.Log;
 import android.view.MotionEvent;
 
 
+/**
+ * Turns touches into input for the simulation. Runs on the UI thread, so it
+ * only reads the player; changes go through the simulation's InputQueue.
+ */
 public class TouchHandler {
 	private final float ACCEL_INCREMENT = 1f;
 	
@@ -27,6 +31,7 @@ public class TouchHandler {
 	public void handleTouchEvent(MotionEvent event) {
 		Scene scene = renderer.getScene();
     	GameObject player = scene.getPlayer();
+    	InputQueue input = scene.getSimulation().getInputQueue();
     	
     	float x = event.getX();
     	float y = event.getY();
@@ -43,18 +48,15 @@ public class TouchHandler {
 	    	case MotionEvent.ACTION_DOWN: {
 	    		//Check if touch is on Bob, if so, start dragging him around
 	    		if (pointIsWithinObject(player, touchPointInWorldCoords)) {
-	    			player.startDragging();
+	    			input.post(InputQueue.START_DRAG);
 	    			previousTouchPointInScreenCoords = touchPointInScreenCoords;
 	    		} else {
 		    		//If the left side of screen was held, decelerate, right side accel.
-					Vectorf velocity = player.getVelocity();
-					Vectorf newVelocity;
 					if (touchPointInScreenCoords.x > screenWidth / 2) {
-						newVelocity = new Vectorf(velocity.x + ACCEL_INCREMENT, velocity.y, velocity.z);
+						input.post(InputQueue.ACCELERATE, ACCEL_INCREMENT);
 					} else {
-						newVelocity = new Vectorf(velocity.x - ACCEL_INCREMENT, velocity.y, velocity.z);
+						input.post(InputQueue.ACCELERATE, -ACCEL_INCREMENT);
 					}
-					player.setVelocity(newVelocity);
 					
 					//TODO: keep accelerating when finger held down (not an InputEvent :( )
 	    		}
@@ -63,21 +65,21 @@ public class TouchHandler {
 	    	case MotionEvent.ACTION_CANCEL:
 	    	case MotionEvent.ACTION_UP: {
 	    		//Drop Bob
-	    		if (player.isBeingDragged()) {
-	    			player.endDragging();
+	    		if (previousTouchPointInScreenCoords != null) {
+	    			input.post(InputQueue.END_DRAG);
 	    			previousTouchPointInScreenCoords = null;
 	    		}	    		
 	    		break;
 	    	}
 	    	case MotionEvent.ACTION_MOVE: {
 	    		//Drag Bob to new location
-	    		if (player.isBeingDragged()) {
+	    		if (previousTouchPointInScreenCoords != null) {
 	    			Pointf prevTouchPointInWorldCoords = getPointInScreenCoordsInWorldCoords(previousTouchPointInScreenCoords);	//Needs to be recalculated as the Camera has moved, changing the vpMat.
 	    			
 	    			float xMovement = touchPointInWorldCoords.x - prevTouchPointInWorldCoords.x;
 	    			float yMovement = touchPointInWorldCoords.y - prevTouchPointInWorldCoords.y;
 	    			
-	    			player.translate(-xMovement, yMovement, 0);	//Negate x so it increases to the right
+	    			input.post(InputQueue.DRAG_BY, xMovement, yMovement);
 	    			
 	    			previousTouchPointInScreenCoords = touchPointInScreenCoords;
 	    		}
@@ -124,12 +126,16 @@ public class TouchHandler {
 		return worldPoint;
 	}
 	
+	/**
+	 * Tests against where obj was last drawn, which is what the touch was aimed at
+	 */
 	private boolean pointIsWithinObject(GameObject obj, Pointf point) {
-		Pointf objPos = obj.getPosition();
+		float objX = obj.getRenderPositionX();
+		float objY = obj.getRenderPositionY();
 		
-		return point.x < objPos.x + 0.5
-				&& point.x > objPos.x - 0.5
-				&& point.y < objPos.y + 0.5
-				&& point.y > objPos.y - 0.5;
+		return point.x < objX + 0.5
+				&& point.x > objX - 0.5
+				&& point.y < objY + 0.5
+				&& point.y > objY - 0.5;
 	}
 }
@@ -0,0 +1,61 @@
+package objects;
+
+/**
+ * A sprite's rectangle within a texture atlas page. See SpriteAtlas for the
+ * generated table of these.
+ */
+public class AtlasRegion {
+	private final String page;
+	private final boolean opaque;
+	private final float u0, v0, u1, v1;
+	private final Mesh mesh;
+	
+	/**
+	 * @param page Drawable name of the atlas page
+	 * @param opaque True if the page has no transparency, so can be decoded as 16 bit
+	 * @param u0 Left edge
+	 * @param v0 Top edge
+	 * @param u1 Right edge
+	 * @param v1 Bottom edge
+	 */
+	public AtlasRegion(String page, boolean opaque, float u0, float v0, float u1, float v1) {
+		this.page = page;
+		this.opaque = opaque;
+		this.u0 = u0;
+		this.v0 = v0;
+		this.u1 = u1;
+		this.v1 = v1;
+		this.mesh = Mesh.UNIT_QUAD.withTexRegion(u0, v0, u1, v1);
+	}
+	
+	public String getPage() {
+		return page;
+	}
+	
+	public boolean isOpaque() {
+		return opaque;
+	}
+	
+	/**
+	 * Unit quad textured with this region, shared by everything drawn with it.
+	 */
+	public Mesh getMesh() {
+		return mesh;
+	}
+	
+	public float getU0() {
+		return u0;
+	}
+	
+	public float getV0() {
+		return v0;
+	}
+	
+	public float getU1() {
+		return u1;
+	}
+	
+	public float getV1() {
+		return v1;
+	}
+}
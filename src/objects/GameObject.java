@@ -1,44 +1,57 @@
 package objects;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
-
-import display.MyRenderer;
-import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.opengl.GLES20;
-import android.opengl.GLUtils;
-import android.opengl.Matrix;
+import core.Matrix4;
 
 public class GameObject {
 
-	private static final int COORDS_PER_VERTEX = 3;
-	private static final int BYTES_PER_FLOAT = 4;
-
-	private FloatBuffer vertexBuffer;
-	private FloatBuffer texCoordBuffer;
+	private Mesh mesh = Mesh.UNIT_QUAD;
 	private int textureDataHandle;
-	protected float[] textureCoords = { 1.0f, 0.0f, 1.0f, 1.0f, 0.0f, 0.0f,
-			1.0f, 1.0f, 0.0f, 1.0f, 0.0f, 0.0f };
 
-	protected float[] _transformMat;
+	//Where the object is. The matrix is only rebuilt from it when asked for,
+	//so moving in physics doesn't touch a matrix at all.
+	private final Transform2D _transform = new Transform2D();
+	private final float[] _transformMat = new float[16];
+	private boolean _transformMatDirty;
+	//Transform as of the previous simulation tick, and the transform to draw
+	//with: somewhere between the previous and current ones.
+	private final Transform2D _previousTransform = new Transform2D();
+	private final Transform2D _renderTransform = new Transform2D();
+	private final float[] _renderTransformMat = new float[16];
+	private boolean _renderTransformMatDirty;
 	private float[] colour = { 0, 0, 0 };
-	float objectCoords[] = { -0.5f, 0.5f, 0, -0.5f, -0.5f, 0, 0.5f, 0.5f, 0,
-			-0.5f, -0.5f, 0, 0.5f, -0.5f, 0, 0.5f, 0.5f, 0 };
 
 	private Vectorf velocity;
 	private Vectorf acceleration;
 
+	private float mass = 1;
+	//Static objects are never moved by physics, and push others as if infinitely heavy
+	private boolean isStatic;
+	private float collisionRadius = 0.5f;	//Fits the unit quad
+
 	private boolean isBeingDragged;
 
 	public Vectorf getUp() {
-		return new Vectorf(_transformMat[4], _transformMat[5], _transformMat[6]);
+		return getUp(new Vectorf());
+	}
+
+	/**
+	 * Writes the up direction into out instead of allocating.
+	 * @return out
+	 */
+	public Vectorf getUp(Vectorf out) {
+		return out.set(-_transform.getSin() * _transform.getScaleY(), _transform.getCos() * _transform.getScaleY(), 0);
 	}
 
 	public Vectorf getForward() {
-		return new Vectorf(_transformMat[0], _transformMat[1], _transformMat[2]);
+		return getForward(new Vectorf());
+	}
+
+	/**
+	 * Writes the forward direction into out instead of allocating.
+	 * @return out
+	 */
+	public Vectorf getForward(Vectorf out) {
+		return out.set(_transform.getCos() * _transform.getScaleX(), _transform.getSin() * _transform.getScaleX(), 0);
 	}
 
 	public void setForward(Vectorf forward) {
@@ -49,128 +62,46 @@ public class GameObject {
 		this.velocity = new Vectorf(0, 0, 0);
 		this.acceleration = new Vectorf(0, 0, 0);
 
-		_transformMat = new float[16];
-		Matrix.setIdentityM(_transformMat, 0);
-
-		initialiseBuffers();
+		Matrix4.setIdentityM(_transformMat, 0);
+		Matrix4.setIdentityM(_renderTransformMat, 0);
 	}
 
-	public void initialiseBuffers() {
-		// initialize vertex byte buffer for shape coordinates
-		ByteBuffer bb = ByteBuffer.allocateDirect(objectCoords.length
-				* BYTES_PER_FLOAT);
-		// use the device hardware's native byte order
-		bb.order(ByteOrder.nativeOrder());
-
-		// create a floating point buffer from the ByteBuffer
-		vertexBuffer = bb.asFloatBuffer();
-		// add the coordinates to the FloatBuffer
-		vertexBuffer.put(objectCoords);
-		// set the buffer to read the first coordinate
-		vertexBuffer.position(0);
-
-		texCoordBuffer = ByteBuffer.allocateDirect(textureCoords.length * 4)
-				.order(ByteOrder.nativeOrder()).asFloatBuffer();
-		texCoordBuffer.put(textureCoords).position(0);
+	public void setTextureDataHandle(int textureDataHandle) {
+		this.textureDataHandle = textureDataHandle;
 	}
 
 	/**
-	 * Adapted from
-	 * http://www.learnopengles.com/android-lesson-four-introducing-
-	 * basic-texturing/
-	 * 
-	 * @param context
-	 * @param resourceId
-	 * @return
+	 * Move by (x, y) in GL coordinates, i.e. with x increasing to the left. Objects
+	 * are flat, so z is ignored.
 	 */
-	public int loadTexture(final String fileName) {
-		final Context context = MyRenderer.getInstance().getAppContext();
-
-		int resourceId = context.getResources().getIdentifier(fileName,
-				"drawable", context.getPackageName());
-
-		if (resourceId == 0) {
-			// could not find resourceId for
-		}
-		final int[] textureHandle = new int[1];
-
-		GLES20.glGenTextures(1, textureHandle, 0);
-
-		if (textureHandle[0] == 0) {
-			throw new RuntimeException("Error loading texture");
-		}
-
-		final BitmapFactory.Options options = new BitmapFactory.Options();
-		options.inScaled = false; // No prescaling
-
-		// read in resource
-		final Bitmap bitmap = BitmapFactory.decodeResource(
-				context.getResources(), resourceId);
-
-		// Bind to texture in OpenGL - does this mean binding to shader?
-		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureHandle[0]);
-
-		// set filtering
-		GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D,
-				GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
-		GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D,
-				GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
-
-		// Load the bitmap into the bound texture.
-		GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
-
-		// Recycle the bitmap, since its data has been loaded into OpenGL.
-		bitmap.recycle();
-
-		this.textureDataHandle = textureHandle[0];
-
-		return textureHandle[0];
-	}
-
 	public void translate(float x, float y, float z) {
-		float[] translationMat = new float[16];
-		Matrix.setIdentityM(translationMat, 0);
-		Matrix.translateM(translationMat, 0, x, y, z);
-
-		Matrix.multiplyMM(_transformMat, 0, translationMat, 0, _transformMat, 0);
+		_transform.translate(-x, y);
+		_transformMatDirty = true;
 	}
 
+	/**
+	 * Grow or shrink about the object's centre. Objects are flat, so z is ignored.
+	 */
 	public void scale(float x, float y, float z) {
-		float[] scaleMat = new float[16];
-		Matrix.setIdentityM(scaleMat, 0);
-		Matrix.scaleM(scaleMat, 0, x, y, z);
-
-		Matrix.multiplyMM(_transformMat, 0, scaleMat, 0, _transformMat, 0);
-	}
-
-	private void glRotate(float angle, float x, float y, float z) {
-		float[] rotationMat = new float[16];
-		Matrix.setIdentityM(rotationMat, 0);
-		Matrix.setRotateM(rotationMat, 0, angle, x, y, z);
-
-		Matrix.multiplyMM(_transformMat, 0, rotationMat, 0, _transformMat, 0);
+		_transform.scale(x, y);
+		_transformMatDirty = true;
 	}
 
 	/**
-	 * "Real rotation" - move object to origin before rotating then returning to
-	 * prev. pos.
-	 * 
-	 * @param obj
-	 * @param angle
+	 * Turn about the object's centre
+	 * @param angle Degrees anticlockwise as drawn
 	 */
 	public void rotate(float angle) {
-		float[] savedObjTransform = _transformMat.clone();
-		float translationX = savedObjTransform[12];
-		float translationY = savedObjTransform[13];
-
-		translate(-translationX, -translationY, 0); // Move to the origin
-		glRotate(angle, 0, 0, 1); // Apply the rotation
+		_transform.rotate(angle);
+		_transformMatDirty = true;
+	}
 
-		translate(translationX, translationY, 0); // Move obj back to where it was before
+	public Mesh getMesh() {
+		return this.mesh;
 	}
 
-	public void setObjectCoords(float[] objectCoords) {
-		this.objectCoords = objectCoords;
+	public void setMesh(Mesh mesh) {
+		this.mesh = mesh;
 	}
 
 	public void setColour(float[] colour) {
@@ -178,27 +109,83 @@ public class GameObject {
 	}
 
 	public void resetTransform() {
-		Matrix.setIdentityM(_transformMat, 0);
+		_transform.setIdentity();
+		_transformMatDirty = true;
 	}
 
+	/**
+	 * Position, angle and scale as of the current tick
+	 */
+	public Transform2D getTransform2D() {
+		return this._transform;
+	}
+
+	/**
+	 * Model matrix for the current tick, rebuilt if the object has moved since
+	 * it was last asked for. Don't modify it: it's overwritten on the next move.
+	 */
 	public float[] getTransform() {
+		if (_transformMatDirty) {
+			_transform.toMatrix(_transformMat);
+			_transformMatDirty = false;
+		}
 		return this._transformMat;
 	}
 
-	public FloatBuffer getVertexBuffer() {
-		return this.vertexBuffer;
+	/**
+	 * Remember the current transform as the start point for interpolation.
+	 * Called at the start of each simulation tick.
+	 */
+	public void savePreviousTransform() {
+		_previousTransform.set(_transform);
 	}
 
-	public FloatBuffer getTexCoordBuffer() {
-		return this.texCoordBuffer;
+	/**
+	 * Position, angle and scale as of the previous tick
+	 */
+	public Transform2D getPreviousTransform2D() {
+		return this._previousTransform;
 	}
 
-	public int getVertexCount() {
-		return this.objectCoords.length / COORDS_PER_VERTEX;
+	/**
+	 * Blend between the previous and current tick's transforms for drawing.
+	 * @param alpha 0 for the previous tick, 1 for the current one
+	 */
+	public void interpolateRenderTransform(float alpha) {
+		interpolateRenderTransform(_previousTransform, _transform, alpha);
 	}
 
-	public int getVertexStride() {
-		return COORDS_PER_VERTEX * 4; // 4 bytes per vertex
+	/**
+	 * Blend between two transforms from elsewhere for drawing, e.g. another
+	 * object's as copied out of the simulation.
+	 * @param alpha 0 for previous, 1 for current
+	 */
+	public void interpolateRenderTransform(Transform2D previous, Transform2D current, float alpha) {
+		_renderTransform.interpolate(previous, current, alpha);
+		_renderTransformMatDirty = true;
+	}
+
+	/**
+	 * Transform to draw with, as of the last interpolateRenderTransform()
+	 */
+	public float[] getRenderTransform() {
+		if (_renderTransformMatDirty) {
+			_renderTransform.toMatrix(_renderTransformMat);
+			_renderTransformMatDirty = false;
+		}
+		return this._renderTransformMat;
+	}
+
+	public float getRenderPositionX() {
+		return _renderTransform.getX();
+	}
+
+	public float getRenderPositionY() {
+		return _renderTransform.getY();
+	}
+
+	public int getVertexCount() {
+		return this.mesh.getVertexCount();
 	}
 
 	public int getTextureDataHandle() {
@@ -210,20 +197,66 @@ public class GameObject {
 	}
 
 	public Pointf getPosition() {
-		return new Pointf(-_transformMat[12], _transformMat[13]);
+		return new Pointf(getPositionX(), getPositionY());
+	}
+
+	public float getPositionX() {
+		return _transform.getX();
+	}
+
+	public float getPositionY() {
+		return _transform.getY();
 	}
 
 	public void setPosition(Pointf pos) {
-		_transformMat[12] = -pos.x;
-		_transformMat[13] = pos.y;
+		setPosition(pos.x, pos.y);
+	}
+
+	public void setPosition(float x, float y) {
+		_transform.setPosition(x, y);
+		_transformMatDirty = true;
 	}
 
-	public void move() {
-		translate(-velocity.x * 0.05f, velocity.y * 0.05f, 0);
+	/**
+	 * @param dt Time step in seconds
+	 */
+	public void move(float dt) {
+		_transform.translate(velocity.x * dt, velocity.y * dt);
+		_transformMatDirty = true;
 	}
 
 	public float getMass() {
-		return 1;
+		return this.mass;
+	}
+
+	public void setMass(float mass) {
+		this.mass = mass;
+	}
+
+	/**
+	 * 1 / mass, or 0 for a static object
+	 */
+	public float getInverseMass() {
+		return isStatic ? 0 : 1 / mass;
+	}
+
+	public boolean isStatic() {
+		return this.isStatic;
+	}
+
+	public void setStatic(boolean isStatic) {
+		this.isStatic = isStatic;
+	}
+
+	/**
+	 * Radius of the circle used for collisions with other objects
+	 */
+	public float getCollisionRadius() {
+		return this.collisionRadius;
+	}
+
+	public void setCollisionRadius(float collisionRadius) {
+		this.collisionRadius = collisionRadius;
 	}
 	
 	public Vectorf getAcceleration() {
@@ -247,7 +280,7 @@ public class GameObject {
 	}
 
 	public void startDragging() {
-		setVelocity(new Vectorf(0, 0, 0));
+		velocity.set(0, 0, 0);
 		this.isBeingDragged = true;
 	}
 
@@ -3,204 +3,509 @@ package objects;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
-import java.util.Collection;
-import java.util.Deque;
-import java.util.LinkedList;
 import java.util.List;
-import android.annotation.TargetApi;
-import android.opengl.Matrix;
-import android.util.Log;
+import core.Matrix4;
 
-@TargetApi(9)
+/**
+ * Ground line, held in a fixed-capacity ring of points so an endless run uses
+ * constant memory. Appending writes new points in place and evicting old points
+ * just advances the head of the ring; nothing is rebuilt or reallocated.
+ *
+ * The GL vertex data is a mirrored ring: the point in ring slot i is written to
+ * vertex i and vertex i + capacity. The live points are therefore always one
+ * contiguous run of vertices, which copyVertices() copies out as a single line
+ * strip whether or not the ring has wrapped.
+ */
 public class Ground {
-	
+
+	public static final int DEFAULT_CAPACITY = 256;
+
 	private static final int COORDS_PER_VERTEX = 3;
 	private static final int BYTES_PER_FLOAT = 4;
-	
+	//How far from a pit wall sweep() leaves an object that hits it, so its x
+	//is clearly in the pit rather than on top of the wall
+	private static final float WALL_CONTACT_OFFSET = 0.001f;
+	//Moves at a smaller angle than this (in radians, roughly) to a segment don't hit it
+	private static final float PARALLEL_TOLERANCE = 1e-4f;
+	/** How far behind the player ground is kept when points are added */
+	public static final float EVICT_DISTANCE_BEHIND = 15;	//TODO: this is currently just some dumb number to make sure we don't drop line segments while they're still on screen.
+
 	private FloatBuffer vertexBuffer;
-	
+
     protected float[] _transformMat;
-    private float[] colour = {0, 0, 0}; 
-	
-    private Deque<Pointf> _groundPoints;
-	private float[] _objectCoords;
+    private float[] colour = {0, 0, 0};
+
+    //Ring of ground points in ascending x order. Logical point i lives in
+    //slot (_head + i) & _mask.
+	private final int _capacity;
+	private final int _mask;
+	private final float[] _pointXs;
+	private final float[] _pointYs;
+	//Top of the bounding box of the segment starting in each slot, for broadphase tests
+	private final float[] _segmentMaxYs;
+	private int _head;
+	private int _pointCount;
+
+	//Logical index of the segment last returned by a lookup. Physics queries
+	//the same few segments every frame.
+	private int _lastSegment;
 
 	public Ground(List<Pointf> groundPoints) {
+		this(groundPoints, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param groundPoints
+	 * @param capacity Max number of points held at once. Rounded up to a power of two.
+	 */
+	public Ground(List<Pointf> groundPoints, int capacity) {
 		_transformMat = new float[16];
-		Matrix.setIdentityM(_transformMat, 0);
-		
-		_groundPoints = new LinkedList<Pointf>();
-		_groundPoints.addAll(groundPoints);
-		
-		_objectCoords = getGlCoordsFromPoints(groundPoints);
-    	
+		Matrix4.setIdentityM(_transformMat, 0);
+
+		_capacity = roundUpToPowerOfTwo(Math.max(capacity, 2));
+		_mask = _capacity - 1;
+		_pointXs = new float[_capacity];
+		_pointYs = new float[_capacity];
+		_segmentMaxYs = new float[_capacity];
+
 		initialiseBuffers();
+
+		for (int i = 0; i < groundPoints.size(); i++) {
+			Pointf point = groundPoints.get(i);
+			appendPoint(point.x, point.y, point.z);
+		}
 		translate(0, -0.5f, 0);
 	}
-	
-	public Pointf getLastPoint() {
-		return _groundPoints.getLast();
-	}
-
-	private float[] getGlCoordsFromPoints(Collection<Pointf> groundPoints) {
-		//First and last points only used once, everything else twice
-		float[] glCoords = new float[((groundPoints.size() - 2) * 6) + 6];	
-		
-		int i = 0;
-		for (Pointf groundPoint : groundPoints) {
-			glCoords[i] = -groundPoint.x;
-			glCoords[i+1] = groundPoint.y;
-			glCoords[i+2] = groundPoint.z;
-			if (i > 0 && i < glCoords.length - 4) {
-				glCoords[i+3] = -groundPoint.x;
-				glCoords[i+4] = groundPoint.y;
-				glCoords[i+5] = groundPoint.z;
-				i += 6;
-			} else {
-				i += 3;
-			}
+
+	private static int roundUpToPowerOfTwo(int n) {
+		int powerOfTwo = 1;
+		while (powerOfTwo < n) {
+			powerOfTwo <<= 1;
 		}
-		
-		return glCoords;
+		return powerOfTwo;
+	}
+
+	public Pointf getLastPoint() {
+		return new Pointf(getLastPointX(), pointY(_pointCount - 1));
+	}
+
+	public float getLastPointX() {
+		return pointX(_pointCount - 1);
+	}
+
+	public float getFirstPointX() {
+		return pointX(0);
+	}
+
+	private float pointX(int i) {
+		return _pointXs[(_head + i) & _mask];
+	}
+
+	private float pointY(int i) {
+		return _pointYs[(_head + i) & _mask];
 	}
 
 	/**
-	 * Solution taken from http://answers.unity3d.com/questions/33223/finding-point-on-the-vector.html
+	 * Linear interpolation along the ground segment containing x.
 	 * @param x
-	 * @return
-	 * @throws Exception 
+	 * @return Ground height at x, or negative infinity if x is outside the ground.
 	 */
 	public float getYPositionAt(float x) {
-		Pointf[] surroundingGroundPoints = getGroundPointsSurrounding(x);
-		
-		if (surroundingGroundPoints == null) {
+		int segment = findSegment(x);
+
+		if (segment < 0) {
 			return Float.NEGATIVE_INFINITY;
 		}
-		Pointf prev = surroundingGroundPoints[0];
-		Pointf next = surroundingGroundPoints[1];
-			
-		if (prev.x <= x && next.x >= x) {
-			Vectorf vec1 = new Vectorf(next, prev);
-			
-			float proportionOfDistanceAlongPrev = Math.abs((x - prev.x) / (next.x - prev.x));
-			
-			Vectorf vecScaledByPropAlongVec1 = 
-					new Vectorf(vec1.x * proportionOfDistanceAlongPrev, 
-								vec1.y * proportionOfDistanceAlongPrev, 
-								vec1.z * proportionOfDistanceAlongPrev);
-			
-			Vectorf v2 = new Vectorf(prev.x + vecScaledByPropAlongVec1.x, 
-									 prev.y + vecScaledByPropAlongVec1.y,
-									 prev.z + vecScaledByPropAlongVec1.z);
-			
-			return v2.y;
-		}
-		
-		return Float.MAX_VALUE;//Shouldn't get here. Scene not defined
-	}
-	
+		float prevX = pointX(segment);
+		float prevY = pointY(segment);
+		float nextX = pointX(segment + 1);
+		float nextY = pointY(segment + 1);
+
+		if (nextX == prevX) {	//Vertical pit wall, stand on top of it
+			return Math.max(prevY, nextY);
+		}
+
+		float proportionOfDistanceAlongPrev = (x - prevX) / (nextX - prevX);
+		return prevY + (nextY - prevY) * proportionOfDistanceAlongPrev;
+	}
+
 	public boolean collidesWith(GameObject player) {
-		return player.getPosition().y <= getYPositionAt(player.getPosition().x);
+		return player.getPositionY() <= getYPositionAt(player.getPositionX());
 	}
-	
+
 	public void translate(float x, float y, float z) {
 		float[] translationMat = new float[16];
-		Matrix.setIdentityM(translationMat, 0);
-		Matrix.translateM(translationMat, 0, x, y, z);
-		
-		Matrix.multiplyMM(_transformMat, 0, translationMat, 0, _transformMat, 0);
-	}
-	
-	private Pointf[] getGroundPointsSurrounding(float x) {
-		for (int i = 0; i < _objectCoords.length - 8; i += 6) {
-			
-			//Note that x has been negated!!! Higher x values to the right.
-			Pointf prev = new Pointf(-_objectCoords[i], _objectCoords[i+1], _objectCoords[i+2]);
-			Pointf next = new Pointf(-_objectCoords[i+6], _objectCoords[i+7], _objectCoords[i+8]);	//Start of next line segment
-			
-			if (prev.x <= x && next.x >= x) {
-				return new Pointf[] { prev, next };
+		Matrix4.setIdentityM(translationMat, 0);
+		Matrix4.translateM(translationMat, 0, x, y, z);
+
+		Matrix4.multiplyMM(_transformMat, 0, translationMat, 0, _transformMat, 0);
+	}
+
+	/**
+	 * Finds the first segment [i, i+1] with x in its x range.
+	 * The segment found by the previous lookup and its neighbours are tried before
+	 * falling back to a binary search, so consecutive frames are O(1).
+	 * @param x
+	 * @return Logical index of the segment's first point, or -1 if x is outside the ground.
+	 */
+	private int findSegment(float x) {
+		int last = _lastSegment;
+		if (segmentContains(last, x)) {
+			return last;
+		}
+		if (segmentContains(last + 1, x)) {
+			_lastSegment = last + 1;
+			return last + 1;
+		}
+		if (segmentContains(last - 1, x)) {
+			_lastSegment = last - 1;
+			return last - 1;
+		}
+
+		if (_pointCount < 2 || x < pointX(0) || x > pointX(_pointCount - 1)) {
+			return -1;
+		}
+
+		int segment = lowerBound(x) - 1;
+		_lastSegment = segment;
+		return segment;
+	}
+
+	/**
+	 * First point after the start with x >= the given x, or the last point if there's none.
+	 */
+	private int lowerBound(float x) {
+		int low = 1;
+		int high = _pointCount - 1;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (pointX(mid) < x) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Logical index of the point starting the segment under x, or 0 if x is
+	 * before the ground. With getPointIndexAfter(), finds the points to draw
+	 * for a range of x: everything between the two indices, inclusive.
+	 */
+	public int getPointIndexBefore(float x) {
+		if (_pointCount < 2 || x <= pointX(0)) {
+			return 0;
+		}
+		return lowerBound(x) - 1;
+	}
+
+	/**
+	 * Logical index of the first point at or after x, or the last point if
+	 * there's none.
+	 */
+	public int getPointIndexAfter(float x) {
+		if (_pointCount < 2) {
+			return _pointCount - 1;
+		}
+		return lowerBound(x);
+	}
+
+	/**
+	 * Broadphase test of a box against the bounding boxes of the segments under
+	 * it. The ground is solid below its line, so a segment's box reaches down
+	 * forever and only its top matters. Only the segments within the box's x
+	 * range are looked at.
+	 * @return False if nothing in the box can be touching the ground
+	 */
+	public boolean mayContact(float minX, float maxX, float minY) {
+		if (_pointCount < 2 || maxX < pointX(0) || minX > pointX(_pointCount - 1)) {
+			return false;
+		}
+
+		int segment = (minX <= pointX(0)) ? 0 : lowerBound(minX) - 1;
+		for (; segment < _pointCount - 1 && pointX(segment) <= maxX; segment++) {
+			if (_segmentMaxYs[(_head + segment) & _mask] >= minY) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Continuous collision: where a point moving in a straight line from (x0, y0)
+	 * to (x1, y1) first passes into the ground, whether through the top of a
+	 * slope or the side of a pit wall. Catches moves that start and end above
+	 * the ground but pass through it in between. Only moves into the ground
+	 * count, so an object on the ground can always leave it.
+	 * @param contactOut Set to where the point meets the ground. On a slope this
+	 * is on the line, as getYPositionAt() gives it; at a wall it's just outside.
+	 * @param normalOut Set to the normal of the segment hit, pointing out of the ground
+	 * @return Fraction of the move (0 to 1) made before the hit, or -1 if there's no hit
+	 */
+	public float sweep(float x0, float y0, float x1, float y1, Pointf contactOut, Vectorf normalOut) {
+		float minX = Math.min(x0, x1);
+		float maxX = Math.max(x0, x1);
+		if (_pointCount < 2 || maxX < pointX(0) || minX > pointX(_pointCount - 1)) {
+			return -1;
+		}
+		float minY = Math.min(y0, y1);
+		float dx = x1 - x0;
+		float dy = y1 - y0;
+
+		int hitSegment = -1;
+		float timeOfImpact = -1;
+		int segment = (minX <= pointX(0)) ? 0 : lowerBound(minX) - 1;
+		for (; segment < _pointCount - 1 && pointX(segment) <= maxX; segment++) {
+			if (_segmentMaxYs[(_head + segment) & _mask] < minY) {
+				continue;
+			}
+			float px = pointX(segment);
+			float py = pointY(segment);
+			float ex = pointX(segment + 1) - px;
+			float ey = pointY(segment + 1) - py;
+
+			//Points run left to right, so the solid side is always on the right of
+			//the segment; a positive cross product means moving into it. Moves
+			//along the segment, e.g. sliding up a ramp, only differ by rounding.
+			float denominator = dx * ey - dy * ex;
+			if (denominator <= PARALLEL_TOLERANCE * (Math.abs(dx) + Math.abs(dy)) * (Math.abs(ex) + Math.abs(ey))) {
+				continue;
+			}
+			float wx = px - x0;
+			float wy = py - y0;
+			float t = (wx * ey - wy * ex) / denominator;	//Along the move
+			float s = (wx * dy - wy * dx) / denominator;	//Along the segment
+			if (t >= 0 && t <= 1 && s >= 0 && s <= 1 && (hitSegment < 0 || t < timeOfImpact)) {
+				hitSegment = segment;
+				timeOfImpact = t;
 			}
 		}
-		
-		return null;
+		if (hitSegment < 0) {
+			return -1;
+		}
+
+		float px = pointX(hitSegment);
+		float py = pointY(hitSegment);
+		float ex = pointX(hitSegment + 1) - px;
+		float ey = pointY(hitSegment + 1) - py;
+		normalOut.set(-ey, ex, 0);
+		normalOut.normalise();
+
+		if (ex == 0) {	//Vertical pit wall; stay on the open side of it
+			contactOut.x = px + normalOut.x * WALL_CONTACT_OFFSET;
+			contactOut.y = y0 + dy * timeOfImpact;
+		} else {
+			contactOut.x = x0 + dx * timeOfImpact;
+			contactOut.y = py + ey * ((contactOut.x - px) / ex);
+		}
+		return timeOfImpact;
+	}
+
+	/**
+	 * Matches the first segment containing x, so that at a vertical pit wall the
+	 * slope leading up to the wall wins over the wall itself.
+	 */
+	private boolean segmentContains(int segment, float x) {
+		if (segment < 0 || segment >= _pointCount - 1) {
+			return false;
+		}
+		if (pointX(segment + 1) < x) {
+			return false;
+		}
+		return segment == 0 ? pointX(0) <= x : pointX(segment) < x;
 	}
-	
+
 	/**
 	 * <Shudder>....
 	 * @param position
 	 * @return
 	 */
 	public Vectorf getNormalForAccelCalc(Pointf position) {
-		Vectorf temp = getNormalAt(position);
-		return new Vectorf(-temp.x, temp.y, 0);
+		return getNormalForAccelCalc(position.x, new Vectorf());
+	}
+
+	/**
+	 * As getNormalForAccelCalc(Pointf), written into out instead of allocating.
+	 * @return out
+	 */
+	public Vectorf getNormalForAccelCalc(float x, Vectorf out) {
+		getNormalAt(x, out);
+		out.x = -out.x;
+		return out;
 	}
 
 	public Vectorf getNormalAt(Pointf position) {
-		
-		Pointf[] surroundingGroundPoints = getGroundPointsSurrounding(position.x);
-		Log.d("Ground.java: ", String.format("%s: (%s,%s), (%s,%s)", "surroundingGroundPoints" ,
-																		surroundingGroundPoints[0].x,
-																		surroundingGroundPoints[0].y,
-																		surroundingGroundPoints[1].x,
-																		surroundingGroundPoints[1].y));
-		
-		float x1 = surroundingGroundPoints[0].x;
-		float x2 = surroundingGroundPoints[1].x;
-		
-		float y1 = surroundingGroundPoints[0].y;
-		float y2 = surroundingGroundPoints[1].y;
-		
-		Vectorf groundLineSegment = new Vectorf(new Pointf(x1, y1), new Pointf(x2, y2));
-		Vectorf normal = groundLineSegment.getPerpendicular();
-		normal.normalise();
-		
-		Log.d("Ground.java: ", "(" + normal.x + "," + normal.y + ")");
-		
-		return normal;
-	}
-	
+		return getNormalAt(position.x, new Vectorf());
+	}
+
+	/**
+	 * Normal of the ground segment at x, written into out instead of allocating.
+	 * Points straight up if x is outside the ground.
+	 * @return out
+	 */
+	public Vectorf getNormalAt(float x, Vectorf out) {
+		int segment = findSegment(x);
+
+		out.z = 0;
+		if (segment < 0) {
+			out.x = 0;
+			out.y = 1;
+			out.setNormalised(true);
+			return out;
+		}
+
+		//Same as new Vectorf(p1, p2).getPerpendicular(), normalised
+		out.x = pointY(segment + 1) - pointY(segment);
+		out.y = pointX(segment + 1) - pointX(segment);
+		out.normalise();
+
+		return out;
+	}
+
+	/**
+	 * Number of live vertices, drawn as a line strip.
+	 */
 	public int getVertexCount() {
-		return this._objectCoords.length / COORDS_PER_VERTEX;
+		return _pointCount;
 	}
-	
+
 	public int getVertexStride() {
 		return COORDS_PER_VERTEX * 4; // 4 bytes per vertex
 	}
 
+	public int getCapacity() {
+		return _capacity;
+	}
+
+	/**
+	 * Vertex data for all 2 * getCapacity() vertices, of which getVertexCount()
+	 * from the head of the ring are live.
+	 */
 	public FloatBuffer getVertexBuffer() {
 		return vertexBuffer;
 	}
 
+	/**
+	 * Copies the vertex data of count live points, starting at logical point
+	 * firstPoint, to the start of out. Thanks to the mirrored ring it's one
+	 * contiguous run.
+	 */
+	public void copyVertices(int firstPoint, int count, FloatBuffer out) {
+		int from = (_head + firstPoint) * COORDS_PER_VERTEX;
+		int floats = count * COORDS_PER_VERTEX;
+		for (int i = 0; i < floats; i++) {
+			out.put(i, vertexBuffer.get(from + i));
+		}
+	}
+
 	public float[] getColor() {
 		return colour;
 	}
-	
+
 	private void initialiseBuffers() {
-		// initialize vertex byte buffer for shape coordinates
-	    ByteBuffer bb = ByteBuffer.allocateDirect(_objectCoords.length * BYTES_PER_FLOAT);
+		// initialize vertex byte buffer for the mirrored ring of points
+	    ByteBuffer bb = ByteBuffer.allocateDirect(_capacity * 2 * COORDS_PER_VERTEX * BYTES_PER_FLOAT);
 	    // use the device hardware's native byte order
 	    bb.order(ByteOrder.nativeOrder());
-	
+
 	    // create a floating point buffer from the ByteBuffer
 	    vertexBuffer = bb.asFloatBuffer();
-	    // add the coordinates to the FloatBuffer
-	    vertexBuffer.put(_objectCoords);
-	    // set the buffer to read the first coordinate
-	    vertexBuffer.position(0);
 	}
 
 	public float[] getTransform() {
 		return _transformMat;
 	}
 
+	/**
+	 * Appends points to the end of the ground, then evicts points that are far
+	 * enough behind currentObjPos to be off screen.
+	 * A point identical to the current last point (the generator repeats its
+	 * start point) is skipped.
+	 */
 	public void addPoints(List<Pointf> points, Pointf currentObjPos) {
-		_groundPoints.addAll(points);
-		while(_groundPoints.getFirst().x < currentObjPos.x - 15) {	//TODO: this is currently just some dumb number to make sure we don't drop line segments while they're still on screen.
-			_groundPoints.removeFirst();
+		for (int i = 0; i < points.size(); i++) {
+			Pointf point = points.get(i);
+			if (_pointCount > 0 && point.x == getLastPointX() && point.y == pointY(_pointCount - 1)) {
+				continue;
+			}
+			appendPoint(point.x, point.y, point.z);
 		}
-		
-		_objectCoords = getGlCoordsFromPoints(_groundPoints);
-		initialiseBuffers();
+
+		evictBefore(currentObjPos.x - EVICT_DISTANCE_BEHIND);
+	}
+
+	/**
+	 * As addPoints(List, Pointf), for points packed as x, y, z floats.
+	 * @param coords Points in world coordinates
+	 * @param count Number of floats of coords to use
+	 */
+	public void addPoints(float[] coords, int count, float currentObjX) {
+		for (int i = 0; i + 2 < count; i += COORDS_PER_VERTEX) {
+			float x = coords[i];
+			float y = coords[i + 1];
+			if (_pointCount > 0 && x == getLastPointX() && y == pointY(_pointCount - 1)) {
+				continue;
+			}
+			appendPoint(x, y, coords[i + 2]);
+		}
+
+		evictBefore(currentObjX - EVICT_DISTANCE_BEHIND);
+	}
+
+	/**
+	 * Writes a point into the next ring slot. If the ring is full the oldest point
+	 * is dropped to make room.
+	 */
+	public void appendPoint(float x, float y, float z) {
+		if (_pointCount == _capacity) {
+			evictFirst();
+		}
+
+		int slot = (_head + _pointCount) & _mask;
+		_pointXs[slot] = x;
+		_pointYs[slot] = y;
+
+		if (_pointCount > 0) {
+			int prevSlot = (slot - 1) & _mask;
+			_segmentMaxYs[prevSlot] = Math.max(_pointYs[prevSlot], y);
+		}
+
+		writeVertex(slot, x, y, z);
+		writeVertex(slot + _capacity, x, y, z);
+		_pointCount++;
+	}
+
+	private void writeVertex(int vertex, float x, float y, float z) {
+		int offset = vertex * COORDS_PER_VERTEX;
+		vertexBuffer.put(offset, -x);	//Note that x is negated!!! Higher x values to the right.
+		vertexBuffer.put(offset + 1, y);
+		vertexBuffer.put(offset + 2, z);
+	}
+
+	/**
+	 * Evicts the points far enough behind currentObjX, as adding points does,
+	 * then checks whether count more points would fit without the ring dropping
+	 * any of the rest.
+	 */
+	public boolean makeRoomFor(int count, float currentObjX) {
+		evictBefore(currentObjX - EVICT_DISTANCE_BEHIND);
+		return _pointCount + count <= _capacity;
+	}
+
+	/**
+	 * Drops points from the start of the ground while the second point is still
+	 * behind x, so the segment under x is always kept.
+	 */
+	public void evictBefore(float x) {
+		while (_pointCount > 2 && pointX(1) < x) {
+			evictFirst();
+		}
+	}
+
+	private void evictFirst() {
+		_head = (_head + 1) & _mask;
+		_pointCount--;
+		_lastSegment = Math.max(_lastSegment - 1, 0);
 	}
 }
@@ -0,0 +1,91 @@
+package objects;
+
+/**
+ * Vertex data for a shape, shared by every object with that shape. The
+ * renderer uploads each mesh to the GPU once, keyed on the Mesh instance, so
+ * meshes must not be modified after they're first drawn.
+ */
+public class Mesh {
+	public static final int COORDS_PER_VERTEX = 3;
+	public static final int TEX_COORDS_PER_VERTEX = 2;
+	
+	/** 1x1 quad centred on the origin, as two triangles */
+	public static final Mesh UNIT_QUAD = new Mesh(
+			new float[] { -0.5f, 0.5f, 0, -0.5f, -0.5f, 0, 0.5f, 0.5f, 0,
+					-0.5f, -0.5f, 0, 0.5f, -0.5f, 0, 0.5f, 0.5f, 0 },
+			new float[] { 1.0f, 0.0f, 1.0f, 1.0f, 0.0f, 0.0f,
+					1.0f, 1.0f, 0.0f, 1.0f, 0.0f, 0.0f });
+	
+	private final float[] positions;
+	private final float[] texCoords;
+	private final int vertexCount;
+	//Bounds of the positions in x and y, for culling
+	private final float minX, maxX, minY, maxY;
+	
+	/**
+	 * @param positions 3 floats per vertex, drawn as triangles
+	 * @param texCoords 2 floats per vertex
+	 */
+	public Mesh(float[] positions, float[] texCoords) {
+		if (positions.length % COORDS_PER_VERTEX != 0
+				|| texCoords.length / TEX_COORDS_PER_VERTEX != positions.length / COORDS_PER_VERTEX) {
+			throw new IllegalArgumentException("Mesh needs one texture coordinate pair per vertex");
+		}
+		this.positions = positions;
+		this.texCoords = texCoords;
+		this.vertexCount = positions.length / COORDS_PER_VERTEX;
+		
+		float left = 0, right = 0, bottom = 0, top = 0;
+		for (int i = 0; i < positions.length; i += COORDS_PER_VERTEX) {
+			left = (i == 0) ? positions[i] : Math.min(left, positions[i]);
+			right = (i == 0) ? positions[i] : Math.max(right, positions[i]);
+			bottom = (i == 0) ? positions[i + 1] : Math.min(bottom, positions[i + 1]);
+			top = (i == 0) ? positions[i + 1] : Math.max(top, positions[i + 1]);
+		}
+		this.minX = left;
+		this.maxX = right;
+		this.minY = bottom;
+		this.maxY = top;
+	}
+	
+	/**
+	 * Copy of this mesh with its texture coordinates squeezed from the whole
+	 * texture into the rectangle (u0, v0) to (u1, v1), e.g. a sprite in an atlas.
+	 */
+	public Mesh withTexRegion(float u0, float v0, float u1, float v1) {
+		float[] regionTexCoords = new float[texCoords.length];
+		for (int i = 0; i < texCoords.length; i += TEX_COORDS_PER_VERTEX) {
+			regionTexCoords[i] = u0 + texCoords[i] * (u1 - u0);
+			regionTexCoords[i + 1] = v0 + texCoords[i + 1] * (v1 - v0);
+		}
+		return new Mesh(positions, regionTexCoords);
+	}
+	
+	public float[] getPositions() {
+		return positions;
+	}
+	
+	public float[] getTexCoords() {
+		return texCoords;
+	}
+	
+	public int getVertexCount() {
+		return vertexCount;
+	}
+	
+	public float getMinX() {
+		return minX;
+	}
+	
+	public float getMaxX() {
+		return maxX;
+	}
+	
+	public float getMinY() {
+		return minY;
+	}
+	
+	public float getMaxY() {
+		return maxY;
+	}
+}
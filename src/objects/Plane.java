@@ -9,7 +9,11 @@ public class Plane {
 		this.normal = normal;
 	}
 	
+	/**
+	 * Signed distance from the plane to p: positive on the side the normal
+	 * points to. The normal must be normalised.
+	 */
 	public float distToPoint(Pointf p) {
-		return 0;		
+		return (p.x - point.x) * normal.x + (p.y - point.y) * normal.y + (p.z - point.z) * normal.z;
 	}
 }
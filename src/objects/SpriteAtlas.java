@@ -0,0 +1,19 @@
+package objects;
+
+/**
+ * Where each sprite is in the texture atlases.
+ * Generated by tools.AtlasPacker from art/sprites. Don't edit; rerun the packer.
+ */
+public final class SpriteAtlas {
+	
+	private SpriteAtlas() {}
+	
+	public static final AtlasRegion BACKGROUND1 = new AtlasRegion("atlas_opaque_0", true,
+			0.0017301039f, 0.0024752475f, 0.9982699f, 0.49752474f);
+	
+	public static final AtlasRegion BIKER = new AtlasRegion("atlas_alpha_0", false,
+			0.055555556f, 0.055555556f, 0.9444444f, 0.9444444f);
+	
+	public static final AtlasRegion FOREGROUND1 = new AtlasRegion("atlas_opaque_0", true,
+			0.0017301039f, 0.50247526f, 0.9982699f, 0.99752474f);
+}
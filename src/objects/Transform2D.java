@@ -0,0 +1,134 @@
+package objects;
+
+import core.Matrix4;
+
+/**
+ * Where an object is, which way it's turned and how big it is: all a flat
+ * sprite needs, in five floats rather than a 4x4 matrix. Moving and rotating
+ * just add to them, so unlike multiplying matrices together, repeating it
+ * never skews or shrinks the object.
+ *
+ * x increases to the right, as the game uses it; toMatrix() negates it for GL.
+ * The angle is in degrees about z, as drawn.
+ */
+public class Transform2D {
+	private float x;
+	private float y;
+	private float angle;
+	private float scaleX = 1;
+	private float scaleY = 1;
+	//Kept with the angle so reading directions doesn't need trig
+	private float cos = 1;
+	private float sin;
+
+	public void setIdentity() {
+		x = 0;
+		y = 0;
+		scaleX = 1;
+		scaleY = 1;
+		setAngle(0);
+	}
+
+	public void set(Transform2D other) {
+		x = other.x;
+		y = other.y;
+		angle = other.angle;
+		scaleX = other.scaleX;
+		scaleY = other.scaleY;
+		cos = other.cos;
+		sin = other.sin;
+	}
+
+	public void setPosition(float x, float y) {
+		this.x = x;
+		this.y = y;
+	}
+
+	public void translate(float dx, float dy) {
+		x += dx;
+		y += dy;
+	}
+
+	/**
+	 * Turn about the object's own centre
+	 */
+	public void rotate(float degrees) {
+		setAngle(angle + degrees);
+	}
+
+	/**
+	 * @param degrees Wrapped to -180 (inclusive) to 180
+	 */
+	public void setAngle(float degrees) {
+		if (degrees >= 180 || degrees < -180) {
+			degrees -= 360 * (float) Math.floor((degrees + 180) / 360);
+		}
+		angle = degrees;
+		double radians = Math.toRadians(degrees);
+		cos = (float) Math.cos(radians);
+		sin = (float) Math.sin(radians);
+	}
+
+	/**
+	 * Grow or shrink about the object's own centre
+	 */
+	public void scale(float x, float y) {
+		scaleX *= x;
+		scaleY *= y;
+	}
+
+	/**
+	 * Set this to somewhere between two transforms. The angle turns the short
+	 * way round.
+	 * @param alpha 0 for from, 1 for to
+	 */
+	public void interpolate(Transform2D from, Transform2D to, float alpha) {
+		x = from.x + (to.x - from.x) * alpha;
+		y = from.y + (to.y - from.y) * alpha;
+		scaleX = from.scaleX + (to.scaleX - from.scaleX) * alpha;
+		scaleY = from.scaleY + (to.scaleY - from.scaleY) * alpha;
+
+		float turn = to.angle - from.angle;
+		if (turn >= 180) {
+			turn -= 360;
+		} else if (turn < -180) {
+			turn += 360;
+		}
+		setAngle(from.angle + turn * alpha);
+	}
+
+	/**
+	 * Write the model matrix for drawing: column major, GL x
+	 */
+	public void toMatrix(float[] m) {
+		Matrix4.setTransform2D(m, 0, -x, y, cos, sin, scaleX, scaleY);
+	}
+
+	public float getX() {
+		return x;
+	}
+
+	public float getY() {
+		return y;
+	}
+
+	public float getAngle() {
+		return angle;
+	}
+
+	public float getScaleX() {
+		return scaleX;
+	}
+
+	public float getScaleY() {
+		return scaleY;
+	}
+
+	public float getCos() {
+		return cos;
+	}
+
+	public float getSin() {
+		return sin;
+	}
+}
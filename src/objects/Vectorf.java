@@ -1,7 +1,6 @@
 package objects;
 
-import android.opengl.Matrix;
-import android.util.FloatMath;
+import core.Matrix4;
 
 public class Vectorf {
 	public float x, y, z;
@@ -41,7 +40,7 @@ public class Vectorf {
 	}
 	
 	public float magnitude() {
-		return FloatMath.sqrt((x*x) + (y*y) + (z*z));
+		return (float) Math.sqrt((x*x) + (y*y) + (z*z));
 	}
 
 	public Vectorf() { }
@@ -73,9 +72,9 @@ public class Vectorf {
 	public float getShortestAngleTo(Vectorf other) {
 		float angle = this.angleTo(other);;
 		
-		Vectorf rotateDir = new Vectorf(other, this);
+		float rotateDirX = other.x - this.x;
 		
-		if (rotateDir.x < 0) {	//Angle to the left
+		if (rotateDirX < 0) {	//Angle to the left
 			angle = -angle;
 		}
 		
@@ -120,6 +119,72 @@ public class Vectorf {
 	public Vectorf invert() {
 		return new Vectorf(-this.x, -this.y, -this.z);
 	}
+	
+	/*
+	 * In-place variants of the above, for code that runs every frame.
+	 * Each returns this so calls can be chained.
+	 */
+	
+	public Vectorf set(float x, float y, float z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.isNormalised = false;
+		return this;
+	}
+	
+	public Vectorf set(Vectorf other) {
+		this.x = other.x;
+		this.y = other.y;
+		this.z = other.z;
+		this.isNormalised = other.isNormalised;
+		return this;
+	}
+	
+	public Vectorf addInPlace(Vectorf other) {
+		return set(this.x + other.x, this.y + other.y, this.z + other.z);
+	}
+	
+	/**
+	 * this += other * scalar
+	 */
+	public Vectorf addScaledInPlace(Vectorf other, float scalar) {
+		return set(this.x + other.x * scalar, this.y + other.y * scalar, this.z + other.z * scalar);
+	}
+	
+	public Vectorf subtractInPlace(Vectorf other) {
+		return set(this.x - other.x, this.y - other.y, this.z - other.z);
+	}
+	
+	public Vectorf scaleInPlace(float scalar) {
+		return set(this.x * scalar, this.y * scalar, this.z * scalar);
+	}
+	
+	public Vectorf divideInPlace(float scalar) {
+		return set(this.x / scalar, this.y / scalar, this.z / scalar);
+	}
+	
+	public Vectorf invertInPlace() {
+		return set(-this.x, -this.y, -this.z);
+	}
+	
+	/**
+	 * Writes getPerpendicular() into out.
+	 * @return out
+	 */
+	public Vectorf perpendicularInto(Vectorf out) {
+		return out.set(-this.y, -this.x, 0);
+	}
+	
+	/**
+	 * Writes a normalised copy of this vector into out, leaving this unchanged.
+	 * @return out
+	 */
+	public Vectorf normaliseInto(Vectorf out) {
+		out.set(this);
+		out.normalise();
+		return out;
+	}
 
 	public void rotate(float angle, int x, int y, int z) {
 		float[] rotationMat = new float[16];
@@ -129,10 +194,10 @@ public class Vectorf {
 		vectorMatrix[2] = this.z;
 		vectorMatrix[3] = 1;
 		
-		Matrix.setIdentityM(rotationMat, 0);
+		Matrix4.setIdentityM(rotationMat, 0);
 		
-		Matrix.setRotateM(rotationMat, 0, angle, x, y, z);
-		Matrix.multiplyMV(vectorMatrix, 0, rotationMat, 0, vectorMatrix, 0);
+		Matrix4.setRotateM(rotationMat, 0, angle, x, y, z);
+		Matrix4.multiplyMV(vectorMatrix, 0, rotationMat, 0, vectorMatrix, 0);
 		
 		this.x = vectorMatrix[0];
 		this.y = vectorMatrix[1];
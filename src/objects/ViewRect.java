@@ -0,0 +1,66 @@
+package objects;
+
+/**
+ * The part of the world on screen, for culling. The camera is orthographic
+ * and looks straight along z, so what it sees is just a rectangle in x and y.
+ *
+ * Coordinates are world coordinates as the game uses them, with x increasing
+ * to the right; GL x, as in transforms and vertex buffers, is negated.
+ */
+public class ViewRect {
+	private float minX = Float.NEGATIVE_INFINITY;
+	private float maxX = Float.POSITIVE_INFINITY;
+	private float minY = Float.NEGATIVE_INFINITY;
+	private float maxY = Float.POSITIVE_INFINITY;
+
+	public void set(float centreX, float centreY, float halfWidth, float halfHeight) {
+		minX = centreX - halfWidth;
+		maxX = centreX + halfWidth;
+		minY = centreY - halfHeight;
+		maxY = centreY + halfHeight;
+	}
+
+	public boolean intersects(float otherMinX, float otherMaxX, float otherMinY, float otherMaxY) {
+		return otherMaxX >= minX && otherMinX <= maxX && otherMaxY >= minY && otherMinY <= maxY;
+	}
+
+	/**
+	 * Whether any of a mesh could be on screen when drawn with the given model
+	 * transform. Tests the box around the transformed bounds of the mesh, so
+	 * may give true for a rotated mesh just off screen but never false for one
+	 * that's on it.
+	 * @param transform Model matrix as GameObject keeps them (column major, GL x)
+	 */
+	public boolean intersects(Mesh mesh, float[] transform) {
+		float centreX = (mesh.getMinX() + mesh.getMaxX()) * 0.5f;
+		float centreY = (mesh.getMinY() + mesh.getMaxY()) * 0.5f;
+		float extentX = (mesh.getMaxX() - mesh.getMinX()) * 0.5f;
+		float extentY = (mesh.getMaxY() - mesh.getMinY()) * 0.5f;
+
+		float[] m = transform;
+		float glCentreX = m[0] * centreX + m[4] * centreY + m[12];
+		float centreWorldY = m[1] * centreX + m[5] * centreY + m[13];
+		float halfWidth = Math.abs(m[0]) * extentX + Math.abs(m[4]) * extentY;
+		float halfHeight = Math.abs(m[1]) * extentX + Math.abs(m[5]) * extentY;
+
+		float centreWorldX = -glCentreX;
+		return intersects(centreWorldX - halfWidth, centreWorldX + halfWidth,
+				centreWorldY - halfHeight, centreWorldY + halfHeight);
+	}
+
+	public float getMinX() {
+		return minX;
+	}
+
+	public float getMaxX() {
+		return maxX;
+	}
+
+	public float getMinY() {
+		return minY;
+	}
+
+	public float getMaxY() {
+		return maxY;
+	}
+}
@@ -0,0 +1,69 @@
+package physics;
+
+/**
+ * Tunable physics constants. A PhysicsHandler copies these when it's created,
+ * so changing a config afterwards doesn't affect handlers already made from it.
+ */
+public class PhysicsConfig {
+	public static final float DEFAULT_GRAVITY = 9.81f;
+	public static final float DEFAULT_GROUND_FRICTION = 0.15f;
+	public static final float DEFAULT_TERMINAL_Y_VELOCITY = 4;
+	public static final float DEFAULT_MIN_ROTATION_DEGREES = 1f;
+
+	private float gravity = DEFAULT_GRAVITY;
+	private float groundFriction = DEFAULT_GROUND_FRICTION;
+	private float terminalYVelocity = DEFAULT_TERMINAL_Y_VELOCITY;
+	private float minRotationDegrees = DEFAULT_MIN_ROTATION_DEGREES;
+
+	public float getGravity() {
+		return gravity;
+	}
+
+	public PhysicsConfig setGravity(float gravity) {
+		this.gravity = gravity;
+		return this;
+	}
+
+	public float getGroundFriction() {
+		return groundFriction;
+	}
+
+	/**
+	 * @param groundFriction Friction force as a proportion of the ground's normal force
+	 */
+	public PhysicsConfig setGroundFriction(float groundFriction) {
+		this.groundFriction = groundFriction;
+		return this;
+	}
+
+	public float getTerminalYVelocity() {
+		return terminalYVelocity;
+	}
+
+	/**
+	 * Not applied by PhysicsHandler yet; kept so tuning runs can record it.
+	 */
+	public PhysicsConfig setTerminalYVelocity(float terminalYVelocity) {
+		this.terminalYVelocity = terminalYVelocity;
+		return this;
+	}
+
+	public float getMinRotationDegrees() {
+		return minRotationDegrees;
+	}
+
+	/**
+	 * @param minRotationDegrees Objects aren't turned to match the ground for
+	 * less than this, to stop them jittering
+	 */
+	public PhysicsConfig setMinRotationDegrees(float minRotationDegrees) {
+		this.minRotationDegrees = minRotationDegrees;
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return "gravity=" + gravity + " groundFriction=" + groundFriction
+				+ " terminalYVelocity=" + terminalYVelocity + " minRotationDegrees=" + minRotationDegrees;
+	}
+}
@@ -1,42 +1,104 @@
 package physics;
 
-import android.util.FloatMath;
-import android.util.Log;
-import game.Scene;
 import objects.GameObject;
 import objects.Ground;
 import objects.Pointf;
 import objects.Vectorf;
 
+/**
+ * Moves objects over the ground. Holds scratch state, so each simulation (and
+ * each thread) needs its own.
+ */
 public class PhysicsHandler {
 	
-	public static final float GRAVITY_EARTH = 9.81f;
-	public static final float TERMINAL_Y_VELOCITY = 4;
-	private static final float GROUND_FRICTION = 0.15f;
-	private static final float MIN_ROTATION_DEGREES = 1f;
+	//Hits handled per step, e.g. landing and then sliding into a wall
+	private static final int MAX_SWEEP_HITS = 3;
 	
-	private static final PhysicsHandler _instance = new PhysicsHandler();
+	private final float gravity;
+	private final float groundFriction;
+	private final float minRotationDegrees;
 	
-	private PhysicsHandler() {}
+	//Scratch vectors reused every step so the physics update doesn't allocate
+	private final Vectorf _gravityDirection = new Vectorf();
+	private final Vectorf _accel = new Vectorf();
+	private final Vectorf _groundNormal = new Vectorf();
+	private final Vectorf _vecPerp = new Vectorf();
+	private final Vectorf _forwardDirection = new Vectorf();
+	private final Vectorf _backwardDirection = new Vectorf();
+	private final Vectorf _impulse = new Vectorf();
+	private final Vectorf _upDir = new Vectorf();
+	private final Vectorf _hitNormal = new Vectorf();
+	private final Pointf _contact = new Pointf(0, 0);
 	
-	public static PhysicsHandler getInstance() {
-		return _instance;
+	public PhysicsHandler() {
+		this(new PhysicsConfig());
 	}
 	
-	public void update(GameObject obj, Scene scene) {
-		Log.d("PhysicsHandler", "Bob at position " + obj.getPosition().x  + ", " + obj.getPosition().y);
-		
-		if (objHasHitGround(obj, scene)) {
-			resolveCollisions(obj, scene);
+	public PhysicsHandler(PhysicsConfig config) {
+		this.gravity = config.getGravity();
+		this.groundFriction = config.getGroundFriction();
+		this.minRotationDegrees = config.getMinRotationDegrees();
+	}
+	
+	public float getGravity() {
+		return gravity;
+	}
+	
+	/**
+	 * @param dt Time step in seconds
+	 */
+	public void update(GameObject obj, Ground ground, float dt) {
+		if (objHasHitGround(obj, ground)) {
+			resolveCollisions(obj, ground);
 		}
 		if (!obj.isBeingDragged()) {
-			Vectorf accel = calculateAcceleration(obj, scene.getGroundPlane());
-			incrementVelocity(obj, accel);
-			obj.move();
-			adjustRotation(obj, scene);
+			Vectorf accel = calculateAcceleration(obj, ground, _accel);
+			incrementVelocity(obj, accel, dt);
+			moveSwept(obj, ground, dt);
+			adjustRotation(obj, ground);
+		}
+		if (objHasHitGround(obj, ground)) {
+			resolveCollisions(obj, ground);
 		}
-		if (objHasHitGround(obj, scene)) {
-			resolveCollisions(obj, scene);
+	}
+
+	/**
+	 * update() for an object the broadphase has shown can't touch the ground
+	 * this step: just falls, skipping all the ground queries.
+	 */
+	void updateAirborne(GameObject obj, float dt) {
+		if (obj.isBeingDragged()) {
+			return;
+		}
+		//Same sums as calculateAcceleration, so the result is identical
+		float mass = obj.getMass();
+		Vectorf accel = _accel.set(0, -1, 0).scaleInPlace(gravity * mass).divideInPlace(mass);
+		incrementVelocity(obj, accel, dt);
+		obj.move(dt);
+	}
+
+	/**
+	 * Moves obj by its velocity without passing through the ground, however far
+	 * it goes in one step. At each hit it stops at the point of impact, loses
+	 * its velocity into the ground, and slides on for the rest of the step.
+	 */
+	private void moveSwept(GameObject obj, Ground ground, float dt) {
+		float remaining = dt;
+		for (int hits = 0; hits < MAX_SWEEP_HITS; hits++) {
+			Vectorf velocity = obj.getVelocity();
+			float x0 = obj.getPositionX();
+			float y0 = obj.getPositionY();
+			float x1 = x0 + velocity.x * remaining;
+			float y1 = y0 + velocity.y * remaining;
+
+			float timeOfImpact = ground.sweep(x0, y0, x1, y1, _contact, _hitNormal);
+			if (timeOfImpact < 0) {
+				obj.setPosition(x1, y1);
+				return;
+			}
+			obj.setPosition(_contact.x, _contact.y);
+			applyImpulse(obj, _hitNormal);
+			remaining -= remaining * timeOfImpact;
 		}
 	}
 
@@ -44,11 +106,17 @@ public class PhysicsHandler {
 	 * Impulse collision resolution based on 
 	 * http://gamedevelopment.tutsplus.com/tutorials/how-to-create-a-custom-2d-physics-engine-the-basics-and-impulse-resolution--gamedev-6331
 	 */
-	private void resolveCollisions(GameObject obj, Scene scene) {
-		Ground ground = scene.getGroundPlane();
-		Pointf objPosition = obj.getPosition();
-		float groundPlaneY = ground.getYPositionAt(objPosition.x);
-		Vectorf groundNormal = ground.getNormalForAccelCalc(objPosition);
+	private void resolveCollisions(GameObject obj, Ground ground) {
+		float objX = obj.getPositionX();
+		float groundPlaneY = ground.getYPositionAt(objX);
+		Vectorf groundNormal = ground.getNormalForAccelCalc(objX, _groundNormal);
+		applyImpulse(obj, groundNormal);
+		
+		//TODO: linear projection position correction (see tutorial). Should avoid the stuttering effect.
+		obj.setPosition(objX, groundPlaneY);
+	}
+	
+	private void applyImpulse(GameObject obj, Vectorf groundNormal) {
 		float inverseObjMass = 1 / obj.getMass();
 		
 		Vectorf objVelocity = obj.getVelocity();
@@ -61,102 +129,90 @@ public class PhysicsHandler {
 			impulseScalar /= inverseObjMass;
 			
 			//Apply impulse
-			Vectorf impulse = groundNormal.multiply(impulseScalar);
-			Vectorf velocityChange = impulse.multiply(inverseObjMass);
-			obj.setVelocity(objVelocity.add(velocityChange));
+			Vectorf impulse = _impulse.set(groundNormal).scaleInPlace(impulseScalar);
+			Vectorf velocityChange = impulse.scaleInPlace(inverseObjMass);
+			objVelocity.addInPlace(velocityChange);
 		}
-		
-		//TODO: linear projection position correction (see tutorial). Should avoid the stuttering effect.
-		obj.setPosition(new Pointf(objPosition.x, groundPlaneY));
 	}
 	
-	private boolean objHasHitGround(GameObject obj, Scene scene) {
-		return scene.getGroundPlane().collidesWith(obj);
+	private boolean objHasHitGround(GameObject obj, Ground ground) {
+		return ground.collidesWith(obj);
 	}
 
-	private Vectorf calculateAcceleration(GameObject obj, Ground ground) {
+	/**
+	 * @return out, set to the object's acceleration
+	 */
+	private Vectorf calculateAcceleration(GameObject obj, Ground ground, Vectorf out) {
 		float mass = obj.getMass();
-		Vectorf gravityDirection = new Vectorf(0, -1, 0);
-		float forceGravity = GRAVITY_EARTH * mass;
-		Vectorf forceGravityVec = gravityDirection.multiply(forceGravity);
-		Vectorf accel;
+		Vectorf gravityDirection = _gravityDirection.set(0, -1, 0);
+		float forceGravity = gravity * mass;
+		Vectorf forceNet = out.set(gravityDirection).scaleInPlace(forceGravity);
 		
-		if (!ground.collidesWith(obj)) {
-			accel = forceGravityVec;
-		} else {
-			Vectorf groundNormal = ground.getNormalForAccelCalc(obj.getPosition());
+		if (ground.collidesWith(obj)) {
+			Vectorf groundNormal = ground.getNormalForAccelCalc(obj.getPositionX(), _groundNormal);
 			groundNormal.normalise();
 			
-			Vectorf vecPerp = groundNormal.invert();
+			Vectorf vecPerp = _vecPerp.set(groundNormal).invertInPlace();
 			vecPerp.normalise();
 			
-			Vectorf forwardDirection = groundNormal.getPerpendicular();
+			Vectorf forwardDirection = groundNormal.perpendicularInto(_forwardDirection);
 			forwardDirection.x = -forwardDirection.x;
 			forwardDirection.normalise();
 			
-			Vectorf backwardDirection = forwardDirection.invert();
-			forwardDirection.normalise();
+			Vectorf backwardDirection = _backwardDirection.set(forwardDirection).invertInPlace();
 			
 			if (groundNormal.x < 0) {
-				Vectorf temp = new Vectorf(backwardDirection);
+				Vectorf temp = backwardDirection;
 				backwardDirection = forwardDirection;
 				forwardDirection = temp;
 			}
 			
 			float theta = gravityDirection.angleTo(vecPerp);
 			
-			float forceForward = forceGravity * FloatMath.sin(theta);
-			Vectorf forceForwardVec = forwardDirection.multiply(forceForward);
-			
-			float groundNormalForce = forceGravity * FloatMath.cos(theta);
-			Vectorf groundNormalForceVec = groundNormal.multiply(groundNormalForce);
+			float forceForward = forceGravity * (float) Math.sin(theta);
+			float groundNormalForce = forceGravity * (float) Math.cos(theta);
 			
 			//TODO: use previous frame's accel to calc friction and then slow us down
-			float forceOfFriction = groundNormalForce * GROUND_FRICTION;
-			Vectorf forceOfFrictionVec = backwardDirection.multiply(forceOfFriction);
+			float forceOfFriction = groundNormalForce * groundFriction;
 
-			Vectorf forceNet = forceGravityVec.add(forceForwardVec).add(groundNormalForceVec).add(forceOfFrictionVec);
-			
-			accel = forceNet.divide(mass);
+			forceNet.addScaledInPlace(forwardDirection, forceForward)
+					.addScaledInPlace(groundNormal, groundNormalForce)
+					.addScaledInPlace(backwardDirection, forceOfFriction);
 		}
-		return accel;
+		return forceNet.divideInPlace(mass);
 	}
 
-	private void incrementVelocity(GameObject obj, Vectorf accel) {
+	private void incrementVelocity(GameObject obj, Vectorf accel, float dt) {
 		Vectorf currentObjVelocity = obj.getVelocity();
-		//Scale down accel as it's currently added to obj velocity per frame, not per sec
-		//TODO: calculate scale factor based on FPS
-		Vectorf increment = accel.multiply(0.05f);
 		if (accel.y == 0 && currentObjVelocity.y < 0) {
 			currentObjVelocity.y = 0;
 		}
 		
 		if (currentObjVelocity.x >= 0 && accel.y == 0 && currentObjVelocity.x + accel.x < 0) {
-			obj.setVelocity(new Vectorf(0,0,0));
-			obj.setAcceleration(new Vectorf(0,0,0));
+			currentObjVelocity.set(0, 0, 0);
+			obj.getAcceleration().set(0, 0, 0);
 		} else {
-			obj.setVelocity(currentObjVelocity.add(increment));
-			obj.setAcceleration(accel);
+			currentObjVelocity.addScaledInPlace(accel, dt);
+			obj.getAcceleration().set(accel);
 		}
 	}
 
 	/**
 	 * Rotate obj according to normal of ground plane at point of collision
 	 * @param obj
-	 * @param scene
+	 * @param g
 	 */
-	public void adjustRotation(GameObject obj, Scene scene) {
-		Ground g = scene.getGroundPlane();
-		if (!objHasHitGround(obj, scene)) {
+	public void adjustRotation(GameObject obj, Ground g) {
+		if (!objHasHitGround(obj, g)) {
 			return;	//TODO: continue previous level of rotation. inertia?
 		} else {
-			Vectorf groundNormal = g.getNormalAt(obj.getPosition());
-			Vectorf upDir = obj.getUp();
+			Vectorf groundNormal = g.getNormalAt(obj.getPositionX(), _groundNormal);
+			Vectorf upDir = obj.getUp(_upDir);
 			upDir.normalise();
 			
 			float rotationAngle = groundNormal.getShortestAngleTo(upDir);
 			
-			if (Math.abs(rotationAngle) > MIN_ROTATION_DEGREES) {
+			if (Math.abs(rotationAngle) > minRotationDegrees) {
 				obj.rotate(rotationAngle);
 			}
 		}
@@ -0,0 +1,252 @@
+package physics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import objects.GameObject;
+import objects.Ground;
+import objects.Vectorf;
+
+/**
+ * Steps any number of bodies (the player, obstacles, pickups, rivals) against
+ * the ground and each other.
+ *
+ * Body vs ground: each body's box, stretched to cover how far it can move this
+ * step, is tested against the ground's per-segment bounding boxes. Only bodies
+ * that may touch the ground go through the full ground physics; the rest just fall.
+ *
+ * Body vs body: sweep and prune along x. Bodies are kept sorted by the left edge
+ * of their boxes with an insertion sort, which is close to linear since the order
+ * barely changes between steps, and only pairs whose boxes overlap are tested
+ * as circles.
+ */
+public class PhysicsWorld {
+
+	/**
+	 * Told about every pair of bodies that touch.
+	 */
+	public interface ContactListener {
+		/**
+		 * @return True to push the bodies apart, false to let them pass through
+		 * each other (e.g. picking up a pickup)
+		 */
+		boolean onContact(GameObject a, GameObject b);
+	}
+
+	private static final float GROUND_SWEEP_MARGIN = 0.01f;
+
+	private final PhysicsHandler handler;
+	private final List<GameObject> bodies = new ArrayList<GameObject>();
+	private ContactListener contactListener;
+
+	//Per body, indexed as bodies: boxes for this step
+	private float[] minXs = new float[16];
+	private float[] maxXs = new float[16];
+	private float[] minYs = new float[16];
+	private float[] maxYs = new float[16];
+	//Body indices sorted by minXs; kept between steps
+	private int[] order = new int[16];
+	private int orderedCount;
+
+	private final Vectorf _normal = new Vectorf();
+
+	//Stats for the last step
+	private int groundChecks;
+	private int candidatePairs;
+	private int contacts;
+
+	public PhysicsWorld() {
+		this(new PhysicsHandler());
+	}
+
+	public PhysicsWorld(PhysicsHandler handler) {
+		this.handler = handler;
+	}
+
+	public void addBody(GameObject body) {
+		bodies.add(body);
+		ensureCapacity(bodies.size());
+		order[orderedCount++] = bodies.size() - 1;
+	}
+
+	public void removeBody(GameObject body) {
+		if (bodies.remove(body)) {
+			//Indices have shifted; the next step's sort soon puts the order right
+			orderedCount = bodies.size();
+			for (int i = 0; i < orderedCount; i++) {
+				order[i] = i;
+			}
+		}
+	}
+
+	public List<GameObject> getBodies() {
+		return bodies;
+	}
+
+	public void setContactListener(ContactListener contactListener) {
+		this.contactListener = contactListener;
+	}
+
+	/**
+	 * @param dt Time step in seconds
+	 */
+	public void step(Ground ground, float dt) {
+		groundChecks = 0;
+		candidatePairs = 0;
+		contacts = 0;
+
+		int count = bodies.size();
+		for (int i = 0; i < count; i++) {
+			GameObject body = bodies.get(i);
+			if (!body.isStatic()) {
+				stepAgainstGround(body, ground, dt);
+			}
+			storeBox(i, body);
+		}
+
+		sortByMinX();
+		sweepAndPrune();
+	}
+
+	private void stepAgainstGround(GameObject body, Ground ground, float dt) {
+		//Furthest the body's position can move this step, in any direction
+		Vectorf velocity = body.getVelocity();
+		float reach = (Math.abs(velocity.x) + Math.abs(velocity.y) + handler.getGravity() * dt) * dt
+				+ GROUND_SWEEP_MARGIN;
+		float x = body.getPositionX();
+		float y = body.getPositionY();
+
+		if (ground.mayContact(x - reach, x + reach, y - reach)) {
+			groundChecks++;
+			handler.update(body, ground, dt);
+		} else {
+			handler.updateAirborne(body, dt);
+		}
+	}
+
+	private void storeBox(int i, GameObject body) {
+		float radius = body.getCollisionRadius();
+		float x = body.getPositionX();
+		float y = body.getPositionY();
+		minXs[i] = x - radius;
+		maxXs[i] = x + radius;
+		minYs[i] = y - radius;
+		maxYs[i] = y + radius;
+	}
+
+	private void sortByMinX() {
+		for (int i = 1; i < orderedCount; i++) {
+			int body = order[i];
+			float minX = minXs[body];
+			int j = i - 1;
+			while (j >= 0 && minXs[order[j]] > minX) {
+				order[j + 1] = order[j];
+				j--;
+			}
+			order[j + 1] = body;
+		}
+	}
+
+	private void sweepAndPrune() {
+		for (int i = 0; i < orderedCount; i++) {
+			int a = order[i];
+			for (int j = i + 1; j < orderedCount; j++) {
+				int b = order[j];
+				if (minXs[b] > maxXs[a]) {
+					break;	//Sorted, so nothing further along can overlap a either
+				}
+				if (minYs[b] > maxYs[a] || minYs[a] > maxYs[b]) {
+					continue;
+				}
+				candidatePairs++;
+				collide(bodies.get(a), bodies.get(b));
+			}
+		}
+	}
+
+	/**
+	 * Circle vs circle. Overlapping bodies are pushed apart in proportion to
+	 * their inverse masses, and lose their velocity towards each other.
+	 */
+	private void collide(GameObject a, GameObject b) {
+		float inverseMassA = a.getInverseMass();
+		float inverseMassB = b.getInverseMass();
+		if (inverseMassA + inverseMassB == 0) {
+			return;	//Both static
+		}
+
+		float dx = b.getPositionX() - a.getPositionX();
+		float dy = b.getPositionY() - a.getPositionY();
+		float distanceSquared = dx * dx + dy * dy;
+		float radii = a.getCollisionRadius() + b.getCollisionRadius();
+		if (distanceSquared >= radii * radii) {
+			return;
+		}
+
+		contacts++;
+		if (contactListener != null && !contactListener.onContact(a, b)) {
+			return;
+		}
+
+		float distance = (float) Math.sqrt(distanceSquared);
+		Vectorf normal = (distance > 0) ? _normal.set(dx / distance, dy / distance, 0) : _normal.set(0, 1, 0);
+
+		//Positional correction
+		float penetration = radii - distance;
+		float shareA = inverseMassA / (inverseMassA + inverseMassB);
+		float shareB = inverseMassB / (inverseMassA + inverseMassB);
+		a.setPosition(a.getPositionX() - normal.x * penetration * shareA, a.getPositionY() - normal.y * penetration * shareA);
+		b.setPosition(b.getPositionX() + normal.x * penetration * shareB, b.getPositionY() + normal.y * penetration * shareB);
+
+		//Impulse, with no restitution, as against the ground
+		Vectorf velocityA = a.getVelocity();
+		Vectorf velocityB = b.getVelocity();
+		float velocityAlongNormal = (velocityB.x - velocityA.x) * normal.x + (velocityB.y - velocityA.y) * normal.y;
+		if (velocityAlongNormal < 0) {
+			float impulseScalar = -velocityAlongNormal / (inverseMassA + inverseMassB);
+			velocityA.addScaledInPlace(normal, -impulseScalar * inverseMassA);
+			velocityB.addScaledInPlace(normal, impulseScalar * inverseMassB);
+		}
+	}
+
+	private void ensureCapacity(int count) {
+		if (count <= order.length) {
+			return;
+		}
+		int size = Math.max(count, order.length * 2);
+		minXs = grow(minXs, size);
+		maxXs = grow(maxXs, size);
+		minYs = grow(minYs, size);
+		maxYs = grow(maxYs, size);
+		int[] biggerOrder = new int[size];
+		System.arraycopy(order, 0, biggerOrder, 0, orderedCount);
+		order = biggerOrder;
+	}
+
+	private static float[] grow(float[] array, int size) {
+		float[] bigger = new float[size];
+		System.arraycopy(array, 0, bigger, 0, array.length);
+		return bigger;
+	}
+
+	/**
+	 * Bodies that needed the full ground physics last step
+	 */
+	public int getGroundCheckCount() {
+		return groundChecks;
+	}
+
+	/**
+	 * Body pairs whose boxes overlapped last step
+	 */
+	public int getCandidatePairCount() {
+		return candidatePairs;
+	}
+
+	/**
+	 * Body pairs that actually touched last step
+	 */
+	public int getContactCount() {
+		return contacts;
+	}
+}
@@ -0,0 +1,187 @@
+package tests;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import game.InMemoryLevelStore;
+import game.LevelRepository;
+import game.LevelStore;
+
+/**
+ * Checks LevelRepository against an InMemoryLevelStore: cache hits and misses,
+ * preloading of the next level, only one read per level however often it's
+ * asked for, LRU eviction, and close() releasing a getLevel() that's waiting
+ * on a load.
+ *
+ * Needs the classes from src (game) on the classpath.
+ * Usage: LevelRepositoryTest
+ * Exits with status 1 if any check failed.
+ */
+public class LevelRepositoryTest {
+	private static final long TIMEOUT_MILLIS = 5000;
+
+	/**
+	 * Counts the reads of each level, and can hold reads until released
+	 */
+	private static class GatedStore implements LevelStore {
+		private final InMemoryLevelStore levels = new InMemoryLevelStore();
+		private final Map<Integer, Integer> reads = new HashMap<Integer, Integer>();
+		private final CountDownLatch entered = new CountDownLatch(1);
+		private final CountDownLatch released;
+
+		GatedStore(boolean gated) {
+			released = new CountDownLatch(gated ? 1 : 0);
+		}
+
+		void putLevel(int levelNumber) {
+			levels.putLevel(levelNumber, levelNumber + " 0 0, " + (levelNumber + 1) + " 1 0");
+		}
+
+		public String readPoints(int levelNumber) {
+			synchronized (this) {
+				Integer count = reads.get(levelNumber);
+				reads.put(levelNumber, (count == null) ? 1 : count + 1);
+			}
+			entered.countDown();
+			try {
+				released.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+			return levels.readPoints(levelNumber);
+		}
+
+		synchronized int getReads(int levelNumber) {
+			Integer count = reads.get(levelNumber);
+			return (count == null) ? 0 : count;
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		boolean passed = checkHitsAndMisses();
+		passed &= checkPreloadsNextLevel();
+		passed &= checkOneReadPerLevel();
+		passed &= checkLruEviction();
+		passed &= checkCloseReleasesWaiter();
+		System.exit(passed ? 0 : 1);
+	}
+
+	private static boolean checkHitsAndMisses() {
+		GatedStore store = new GatedStore(false);
+		store.putLevel(1);
+		LevelRepository repository = new LevelRepository(store);
+
+		float[] first = repository.getLevel(1);
+		float[] second = repository.getLevel(1);
+		float[] missing = repository.getLevel(99);
+		repository.close();
+
+		return check("hits and misses", first != null && first[0] == 1 && second == first
+				&& missing == null && !repository.isCached(99)
+				&& repository.getHitCount() == 1 && repository.getMissCount() == 2);
+	}
+
+	private static boolean checkPreloadsNextLevel() throws InterruptedException {
+		GatedStore store = new GatedStore(false);
+		store.putLevel(1);
+		store.putLevel(2);
+		LevelRepository repository = new LevelRepository(store);
+
+		repository.getLevel(1);
+		boolean preloaded = waitUntilCached(repository, 2);
+		float[] next = repository.getLevel(2);
+		repository.close();
+
+		return check("preloads next level", preloaded && next != null && next[0] == 2
+				&& repository.getHitCount() == 1 && repository.getMissCount() == 1);
+	}
+
+	private static boolean checkOneReadPerLevel() {
+		GatedStore store = new GatedStore(true);
+		store.putLevel(5);
+		LevelRepository repository = new LevelRepository(store);
+
+		//All asked for while the first read is held, so they find it pending
+		repository.preload(5);
+		repository.preload(5);
+		repository.preload(5);
+		store.released.countDown();
+		float[] level = repository.getLevel(5);
+		repository.getLevel(5);
+		repository.close();
+
+		return check("one read per level", level != null && store.getReads(5) == 1);
+	}
+
+	private static boolean checkLruEviction() {
+		//Only every tenth level exists, so the preloads of the next ones cache nothing
+		GatedStore store = new GatedStore(false);
+		store.putLevel(10);
+		store.putLevel(20);
+		store.putLevel(30);
+		LevelRepository repository = new LevelRepository(store, 2);
+
+		repository.getLevel(10);
+		repository.getLevel(20);
+		repository.getLevel(10);	//Now more recently used than 20
+		repository.getLevel(30);
+		boolean evicted = repository.isCached(10) && !repository.isCached(20) && repository.isCached(30);
+		repository.close();
+
+		return check("LRU eviction", evicted);
+	}
+
+	private static boolean checkCloseReleasesWaiter() throws InterruptedException {
+		final GatedStore store = new GatedStore(true);
+		store.putLevel(7);
+		final LevelRepository repository = new LevelRepository(store);
+
+		final RuntimeException[] thrown = new RuntimeException[1];
+		Thread waiter = new Thread(new Runnable() {
+			public void run() {
+				try {
+					repository.getLevel(7);
+				} catch (RuntimeException e) {
+					thrown[0] = e;
+				}
+			}
+		}, "Waiter");
+		waiter.start();
+
+		boolean loading = store.entered.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		repository.close();
+		waiter.join(TIMEOUT_MILLIS);
+		boolean released = !waiter.isAlive() && thrown[0] instanceof IllegalStateException;
+
+		boolean closedFails;
+		try {
+			repository.getLevel(7);
+			closedFails = false;
+		} catch (IllegalStateException e) {
+			closedFails = true;
+		}
+		store.released.countDown();
+
+		return check("close releases waiter", loading && released && closedFails);
+	}
+
+	private static boolean waitUntilCached(LevelRepository repository, int levelNumber)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (!repository.isCached(levelNumber)) {
+			if (System.currentTimeMillis() > deadline) {
+				return false;
+			}
+			Thread.sleep(1);
+		}
+		return true;
+	}
+
+	private static boolean check(String name, boolean passed) {
+		System.out.println(name + ": " + (passed ? "passed" : "FAILED"));
+		return passed;
+	}
+}
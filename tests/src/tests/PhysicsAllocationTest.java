@@ -0,0 +1,102 @@
+package tests;
+
+import java.lang.management.ManagementFactory;
+
+import core.ManualTimeSource;
+import game.ChunkedGroundGenerator;
+import game.InputScript;
+import game.Simulation;
+import objects.GameObject;
+import objects.Ground;
+import physics.PhysicsHandler;
+
+/**
+ * Checks that stepping the physics allocates nothing, so the garbage collector
+ * never has a reason to pause a frame. Both PhysicsHandler.update() and a whole
+ * Simulation.tick() are measured, over seeded rides with the throttle open so
+ * the steps include riding, jumping, landing and falling into pits.
+ *
+ * Allocation is counted per thread by the JVM (com.sun.management.ThreadMXBean),
+ * after a warm-up so class loading and the JIT don't count.
+ *
+ * Needs the classes from src (game, objects, physics, core) on the classpath.
+ * Usage: PhysicsAllocationTest
+ * Exits with status 1 if either path allocated anything.
+ */
+public class PhysicsAllocationTest {
+	private static final float DT = 1f / Simulation.TICKS_PER_SECOND;
+	private static final int TICKS_PER_RIDE = 400;
+	private static final int WARMUP_RIDES = 50;
+	private static final int MEASURED_RIDES = 30;	//12000 steps
+	private static final float TARGET_SPEED = 12;
+
+	private static com.sun.management.ThreadMXBean threads;
+
+	public static void main(String[] args) {
+		threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (!threads.isThreadAllocatedMemorySupported()) {
+			System.err.println("This JVM can't count allocated bytes per thread");
+			System.exit(2);
+		}
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		boolean passed = check("PhysicsHandler.update", false);
+		passed &= check("Simulation.tick", true);
+		System.exit(passed ? 0 : 1);
+	}
+
+	private static boolean check(String name, boolean wholeTick) {
+		for (int seed = 0; seed < WARMUP_RIDES; seed++) {
+			ride(seed, wholeTick);
+		}
+		long bytes = 0;
+		for (int seed = 0; seed < MEASURED_RIDES; seed++) {
+			bytes += ride(WARMUP_RIDES + seed, wholeTick);
+		}
+		long steps = (long) MEASURED_RIDES * TICKS_PER_RIDE;
+		System.out.println(name + ": " + bytes + " bytes allocated over " + steps + " steps"
+				+ (bytes == 0 ? "" : " (" + (double) bytes / steps + " per step) FAILED"));
+		return bytes == 0;
+	}
+
+	/**
+	 * One ride on fresh terrain. Only the steps are measured, not setting up.
+	 * @return Bytes allocated by the steps
+	 */
+	private static long ride(long seed, boolean wholeTick) {
+		Simulation simulation = new Simulation(new ManualTimeSource(), new ChunkedGroundGenerator(seed));
+		InputScript throttle = new InputScript() {
+			public void apply(long tick, GameObject player) {
+				if (player.getVelocity().x < TARGET_SPEED) {
+					player.getVelocity().x += 1;
+				}
+			}
+		};
+		PhysicsHandler physicsHandler = new PhysicsHandler();
+		GameObject player = simulation.getPlayer();
+		Ground ground = simulation.getGround();
+		simulation.setInputScript(throttle);
+
+		long before = allocatedBytes();
+		long baseline = allocatedBytes() - before;	//What measuring costs, if anything
+		before = allocatedBytes();
+		if (wholeTick) {
+			for (int tick = 0; tick < TICKS_PER_RIDE; tick++) {
+				simulation.tick();
+			}
+		} else {
+			for (int tick = 0; tick < TICKS_PER_RIDE; tick++) {
+				throttle.apply(tick, player);
+				physicsHandler.update(player, ground, DT);
+			}
+		}
+		long bytes = allocatedBytes() - before - baseline;
+
+		simulation.close();
+		return bytes;
+	}
+
+	private static long allocatedBytes() {
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
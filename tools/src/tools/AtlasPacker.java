@@ -0,0 +1,286 @@
+package tools;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Build step that packs the sprite images into texture atlases, so sprites can
+ * be drawn without rebinding a texture for each one.
+ *
+ * Every PNG in the input directory is packed with a shelf packer: images are
+ * sorted tallest first and laid left to right in rows, with a new page started
+ * when a page fills up. Opaque images and images with transparency go to
+ * separate pages so the opaque pages can be stored and decoded as 16 bit.
+ * Each image gets a border of copies of its edge pixels so linear filtering
+ * never picks up a neighbour.
+ *
+ * Writes the pages as PNGs into the output drawable directory, plus a Java
+ * table of every sprite's page and UV rectangle (objects.SpriteAtlas).
+ *
+ * Pure Java SE, so it runs on any build machine:
+ * AtlasPacker art/sprites res/drawable-nodpi src/objects/SpriteAtlas.java
+ */
+public class AtlasPacker {
+
+	public static final int DEFAULT_MAX_PAGE_SIZE = 2048;
+	public static final int PADDING = 2;
+
+	static class Sprite {
+		final String name;
+		final BufferedImage image;
+		final boolean opaque;
+
+		//Where the image itself (not its padding) ended up
+		int page;
+		int x;
+		int y;
+
+		Sprite(String name, BufferedImage image) {
+			this.name = name;
+			this.image = image;
+			this.opaque = isOpaque(image);
+		}
+
+		int paddedWidth() {
+			return image.getWidth() + 2 * PADDING;
+		}
+
+		int paddedHeight() {
+			return image.getHeight() + 2 * PADDING;
+		}
+	}
+
+	static class Page {
+		final String name;
+		final boolean opaque;
+		int width;
+		int height;
+
+		Page(String name, boolean opaque) {
+			this.name = name;
+			this.opaque = opaque;
+		}
+	}
+
+	private final int maxPageSize;
+	private final List<Page> pages = new ArrayList<Page>();
+
+	public AtlasPacker(int maxPageSize) {
+		this.maxPageSize = maxPageSize;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.err.println("Usage: AtlasPacker <sprite dir> <output drawable dir> <output SpriteAtlas.java> [max page size]");
+			System.exit(1);
+		}
+		int maxPageSize = (args.length > 3) ? Integer.parseInt(args[3]) : DEFAULT_MAX_PAGE_SIZE;
+
+		List<Sprite> sprites = readSprites(new File(args[0]));
+		AtlasPacker packer = new AtlasPacker(maxPageSize);
+		packer.pack(sprites);
+
+		File drawableDir = new File(args[1]);
+		drawableDir.mkdirs();
+		packer.writePages(sprites, drawableDir);
+		packer.writeTable(sprites, new File(args[2]), args[0]);
+
+		for (Page page : packer.pages) {
+			System.out.println(page.name + ": " + page.width + "x" + page.height);
+		}
+	}
+
+	static List<Sprite> readSprites(File dir) throws IOException {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			throw new IOException("Not a directory: " + dir);
+		}
+		Arrays.sort(files);
+
+		List<Sprite> sprites = new ArrayList<Sprite>();
+		for (File file : files) {
+			String fileName = file.getName();
+			if (!fileName.endsWith(".png")) {
+				continue;
+			}
+			BufferedImage image = ImageIO.read(file);
+			if (image == null) {
+				throw new IOException("Could not read " + file);
+			}
+			sprites.add(new Sprite(fileName.substring(0, fileName.length() - 4), image));
+		}
+		return sprites;
+	}
+
+	static boolean isOpaque(BufferedImage image) {
+		if (!image.getColorModel().hasAlpha()) {
+			return true;
+		}
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				if ((image.getRGB(x, y) >>> 24) != 0xFF) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Assigns every sprite a page and position. Opaque sprites are packed first.
+	 */
+	public void pack(List<Sprite> sprites) {
+		packGroup(sprites, true);
+		packGroup(sprites, false);
+	}
+
+	private void packGroup(List<Sprite> allSprites, boolean opaque) {
+		List<Sprite> sprites = new ArrayList<Sprite>();
+		for (Sprite sprite : allSprites) {
+			if (sprite.opaque == opaque) {
+				sprites.add(sprite);
+			}
+		}
+		if (sprites.isEmpty()) {
+			return;
+		}
+
+		//Tallest first keeps the shelves tight. Ties broken by name so the output is stable.
+		Collections.sort(sprites, new Comparator<Sprite>() {
+			public int compare(Sprite a, Sprite b) {
+				if (a.image.getHeight() != b.image.getHeight()) {
+					return b.image.getHeight() - a.image.getHeight();
+				}
+				return a.name.compareTo(b.name);
+			}
+		});
+
+		String prefix = opaque ? "atlas_opaque_" : "atlas_alpha_";
+		int pageIndex = 0;
+		Page page = newPage(prefix + pageIndex, opaque);
+		int shelfX = 0;
+		int shelfY = 0;
+		int shelfHeight = 0;
+
+		for (Sprite sprite : sprites) {
+			int width = sprite.paddedWidth();
+			int height = sprite.paddedHeight();
+			if (width > maxPageSize || height > maxPageSize) {
+				throw new IllegalArgumentException(sprite.name + " is bigger than the max page size of " + maxPageSize);
+			}
+
+			if (shelfX + width > maxPageSize) {	//Start a new shelf
+				shelfY += shelfHeight;
+				shelfX = 0;
+				shelfHeight = 0;
+			}
+			if (shelfY + height > maxPageSize) {	//Start a new page
+				pageIndex++;
+				page = newPage(prefix + pageIndex, opaque);
+				shelfX = 0;
+				shelfY = 0;
+				shelfHeight = 0;
+			}
+
+			sprite.page = pages.indexOf(page);
+			sprite.x = shelfX + PADDING;
+			sprite.y = shelfY + PADDING;
+
+			shelfX += width;
+			shelfHeight = Math.max(shelfHeight, height);
+			page.width = Math.max(page.width, shelfX);
+			page.height = Math.max(page.height, shelfY + shelfHeight);
+		}
+	}
+
+	private Page newPage(String name, boolean opaque) {
+		Page page = new Page(name, opaque);
+		pages.add(page);
+		return page;
+	}
+
+	public void writePages(List<Sprite> sprites, File drawableDir) throws IOException {
+		for (int p = 0; p < pages.size(); p++) {
+			Page page = pages.get(p);
+			BufferedImage atlas = new BufferedImage(page.width, page.height,
+					page.opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+
+			for (Sprite sprite : sprites) {
+				if (sprite.page == p) {
+					blitWithExtrudedEdges(sprite, atlas);
+				}
+			}
+
+			ImageIO.write(atlas, "png", new File(drawableDir, page.name + ".png"));
+		}
+	}
+
+	/**
+	 * Draws the sprite, then fills its padding by clamping to the nearest edge pixel.
+	 */
+	private static void blitWithExtrudedEdges(Sprite sprite, BufferedImage atlas) {
+		BufferedImage image = sprite.image;
+		int width = image.getWidth();
+		int height = image.getHeight();
+
+		for (int y = -PADDING; y < height + PADDING; y++) {
+			int srcY = Math.min(Math.max(y, 0), height - 1);
+			for (int x = -PADDING; x < width + PADDING; x++) {
+				int srcX = Math.min(Math.max(x, 0), width - 1);
+				atlas.setRGB(sprite.x + x, sprite.y + y, image.getRGB(srcX, srcY));
+			}
+		}
+	}
+
+	public void writeTable(List<Sprite> sprites, File javaFile, String spriteDir) throws IOException {
+		javaFile.getParentFile().mkdirs();
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(javaFile), "UTF-8"));
+		try {
+			out.println("package objects;");
+			out.println();
+			out.println("/**");
+			out.println(" * Where each sprite is in the texture atlases.");
+			out.println(" * Generated by tools.AtlasPacker from " + spriteDir + ". Don't edit; rerun the packer.");
+			out.println(" */");
+			out.println("public final class SpriteAtlas {");
+			out.println("\t");
+			out.println("\tprivate SpriteAtlas() {}");
+
+			List<Sprite> byName = new ArrayList<Sprite>(sprites);
+			Collections.sort(byName, new Comparator<Sprite>() {
+				public int compare(Sprite a, Sprite b) {
+					return a.name.compareTo(b.name);
+				}
+			});
+
+			for (Sprite sprite : byName) {
+				Page page = pages.get(sprite.page);
+				out.println("\t");
+				out.println("\tpublic static final AtlasRegion " + sprite.name.toUpperCase(Locale.US)
+						+ " = new AtlasRegion(\"" + page.name + "\", " + page.opaque + ",");
+				out.println("\t\t\t" + uv(sprite.x, page.width) + ", " + uv(sprite.y, page.height) + ", "
+						+ uv(sprite.x + sprite.image.getWidth(), page.width) + ", "
+						+ uv(sprite.y + sprite.image.getHeight(), page.height) + ");");
+			}
+			out.println("}");
+		} finally {
+			out.close();
+		}
+	}
+
+	private static String uv(int px, int size) {
+		return Float.toString((float) px / size) + "f";
+	}
+}
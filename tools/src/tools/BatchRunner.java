@@ -0,0 +1,338 @@
+package tools;
+
+import game.ChunkedGroundGenerator;
+import game.InputScript;
+import game.Simulation;
+import game.TerrainConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import objects.GameObject;
+import objects.Ground;
+import physics.PhysicsConfig;
+import core.ManualTimeSource;
+
+/**
+ * Runs thousands of complete rides headless, across every core, for tuning
+ * physics and terrain constants.
+ *
+ * Every combination of the listed parameter values is ridden on the same
+ * seeds, by a bot that holds the throttle until it reaches a target speed. A
+ * ride ends when the bike falls into a pit, stalls, or reaches the tick limit.
+ * Rides are independent Simulations, split between threads by a fork-join pool;
+ * the outcomes for each combination are summed as the tasks join.
+ *
+ * Needs the classes from src (game, objects, physics, core) on the classpath.
+ * Usage: BatchRunner [option value]...
+ *   --seeds n              Rides per combination, on seeds 0 to n - 1 (default 200)
+ *   --ticks n              Most ticks per ride (default 2000, 100 s)
+ *   --threads n            Worker threads (default: one per core)
+ *   --speed a,b,...        Bot's target speed
+ *   --friction a,b,...     PhysicsConfig ground friction
+ *   --gravity a,b,...      PhysicsConfig gravity
+ *   --jump-angle a,b,...   TerrainConfig max jump angle
+ *   --jump-distance a,b,...  TerrainConfig max jump distance
+ * e.g.   BatchRunner --seeds 1000 --friction 0.1,0.15,0.2 --jump-angle 30,45
+ */
+public class BatchRunner {
+
+	private static final float FELL_BELOW_Y = -10f;
+	private static final int STALLED_TICKS = 5 * Simulation.TICKS_PER_SECOND;
+	private static final float STALLED_SPEED = 0.01f;
+	private static final float AIRBORNE_HEIGHT = 0.01f;
+	//Same as a tap on the right of the screen
+	private static final float ACCEL_INCREMENT = 1f;
+	private static final int RIDES_PER_TASK = 4;
+
+	private static final int OUTCOME_FELL = 0;
+	private static final int OUTCOME_STALLED = 1;
+	private static final int OUTCOME_FINISHED = 2;
+	private static final String[] OUTCOME_NAMES = { "fell", "stalled", "finished" };
+
+	/**
+	 * One combination of parameter values
+	 */
+	static final class Params {
+		final float speed;
+		final float friction;
+		final float gravity;
+		final float jumpAngle;
+		final float jumpDistance;
+
+		Params(float speed, float friction, float gravity, float jumpAngle, float jumpDistance) {
+			this.speed = speed;
+			this.friction = friction;
+			this.gravity = gravity;
+			this.jumpAngle = jumpAngle;
+			this.jumpDistance = jumpDistance;
+		}
+
+		PhysicsConfig physicsConfig() {
+			return new PhysicsConfig().setGroundFriction(friction).setGravity(gravity);
+		}
+
+		TerrainConfig terrainConfig() {
+			return new TerrainConfig().setMaxJumpAngle(jumpAngle).setMaxJumpDistance(jumpDistance);
+		}
+
+		@Override
+		public String toString() {
+			return "speed=" + speed + " friction=" + friction + " gravity=" + gravity
+					+ " jumpAngle=" + jumpAngle + " jumpDistance=" + jumpDistance;
+		}
+	}
+
+	/**
+	 * Holds the throttle until the player reaches a target speed
+	 */
+	static final class ThrottleScript implements InputScript {
+		private final float targetSpeed;
+
+		ThrottleScript(float targetSpeed) {
+			this.targetSpeed = targetSpeed;
+		}
+
+		public void apply(long tick, GameObject player) {
+			if (!player.isBeingDragged() && player.getVelocity().x < targetSpeed) {
+				player.getVelocity().x = Math.min(player.getVelocity().x + ACCEL_INCREMENT, targetSpeed);
+			}
+		}
+	}
+
+	/**
+	 * Outcomes of any number of rides with the same parameters
+	 */
+	static final class Totals {
+		int rides;
+		long ticks;
+		long airborneTicks;
+		double distance;
+		float minDistance = Float.POSITIVE_INFINITY;
+		float maxDistance = Float.NEGATIVE_INFINITY;
+		final int[] outcomes = new int[OUTCOME_NAMES.length];
+
+		void add(int outcome, float rideDistance, int rideTicks, int rideAirborneTicks) {
+			rides++;
+			ticks += rideTicks;
+			airborneTicks += rideAirborneTicks;
+			distance += rideDistance;
+			minDistance = Math.min(minDistance, rideDistance);
+			maxDistance = Math.max(maxDistance, rideDistance);
+			outcomes[outcome]++;
+		}
+
+		void add(Totals other) {
+			rides += other.rides;
+			ticks += other.ticks;
+			airborneTicks += other.airborneTicks;
+			distance += other.distance;
+			minDistance = Math.min(minDistance, other.minDistance);
+			maxDistance = Math.max(maxDistance, other.maxDistance);
+			for (int i = 0; i < outcomes.length; i++) {
+				outcomes[i] += other.outcomes[i];
+			}
+		}
+	}
+
+	/**
+	 * Rides [start, end) of the batch; ride i is seed i % seeds of combination i / seeds.
+	 * Returns the totals of just the combinations those rides cover, from
+	 * start / seeds to (end - 1) / seeds, so a leaf sums into one or two Totals
+	 * rather than one per combination.
+	 */
+	final class RideTask extends RecursiveTask<Totals[]> {
+		private static final long serialVersionUID = 1L;	//Never serialized; ForkJoinTask just is Serializable
+		private final int start;
+		private final int end;
+
+		RideTask(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected Totals[] compute() {
+			if (start == end) {
+				return new Totals[0];
+			}
+			if (end - start <= RIDES_PER_TASK) {
+				int firstCombination = start / seeds;
+				Totals[] totals = newTotals((end - 1) / seeds - firstCombination + 1);
+				for (int i = start; i < end; i++) {
+					int combination = i / seeds;
+					ride(combinations.get(combination), i % seeds, totals[combination - firstCombination]);
+				}
+				return totals;
+			}
+
+			int middle = (start + end) >>> 1;
+			RideTask left = new RideTask(start, middle);
+			left.fork();
+			Totals[] rightTotals = new RideTask(middle, end).compute();
+			Totals[] leftTotals = left.join();
+
+			//The halves share a combination if it straddles the middle
+			int shared = ((middle - 1) / seeds == middle / seeds) ? 1 : 0;
+			if (shared == 1) {
+				leftTotals[leftTotals.length - 1].add(rightTotals[0]);
+			}
+			Totals[] totals = new Totals[leftTotals.length + rightTotals.length - shared];
+			System.arraycopy(leftTotals, 0, totals, 0, leftTotals.length);
+			System.arraycopy(rightTotals, shared, totals, leftTotals.length, rightTotals.length - shared);
+			return totals;
+		}
+	}
+
+	private final List<Params> combinations;
+	private final int seeds;
+	private final int maxTicks;
+
+	BatchRunner(List<Params> combinations, int seeds, int maxTicks) {
+		this.combinations = combinations;
+		this.seeds = seeds;
+		this.maxTicks = maxTicks;
+	}
+
+	public static void main(String[] args) {
+		int seeds = 200;
+		int maxTicks = 2000;
+		int threads = Runtime.getRuntime().availableProcessors();
+		float[] speeds = { 20 };
+		float[] frictions = { PhysicsConfig.DEFAULT_GROUND_FRICTION };
+		float[] gravities = { PhysicsConfig.DEFAULT_GRAVITY };
+		float[] jumpAngles = { TerrainConfig.DEFAULT_MAX_JUMP_ANGLE };
+		float[] jumpDistances = { TerrainConfig.DEFAULT_MAX_JUMP_DISTANCE };
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String option = args[i];
+			String value = args[i + 1];
+			if (option.equals("--seeds")) {
+				seeds = Integer.parseInt(value);
+			} else if (option.equals("--ticks")) {
+				maxTicks = Integer.parseInt(value);
+			} else if (option.equals("--threads")) {
+				threads = Integer.parseInt(value);
+			} else if (option.equals("--speed")) {
+				speeds = parseList(value);
+			} else if (option.equals("--friction")) {
+				frictions = parseList(value);
+			} else if (option.equals("--gravity")) {
+				gravities = parseList(value);
+			} else if (option.equals("--jump-angle")) {
+				jumpAngles = parseList(value);
+			} else if (option.equals("--jump-distance")) {
+				jumpDistances = parseList(value);
+			} else {
+				System.err.println("Unknown option " + option + "; see the BatchRunner class comment");
+				System.exit(1);
+			}
+		}
+		if (args.length % 2 != 0) {
+			System.err.println("Missing value for " + args[args.length - 1]);
+			System.exit(1);
+		}
+
+		List<Params> combinations = new ArrayList<Params>();
+		for (float speed : speeds) {
+			for (float friction : frictions) {
+				for (float gravity : gravities) {
+					for (float jumpAngle : jumpAngles) {
+						for (float jumpDistance : jumpDistances) {
+							combinations.add(new Params(speed, friction, gravity, jumpAngle, jumpDistance));
+						}
+					}
+				}
+			}
+		}
+
+		new BatchRunner(combinations, seeds, maxTicks).run(threads);
+	}
+
+	void run(int threads) {
+		int rides = combinations.size() * seeds;
+		System.out.println(rides + " rides (" + combinations.size() + " combinations x " + seeds
+				+ " seeds) of up to " + maxTicks + " ticks on " + threads + " threads");
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		long startNanos = System.nanoTime();
+		Totals[] totals = pool.invoke(new RideTask(0, rides));
+		double seconds = (System.nanoTime() - startNanos) / 1e9;
+		pool.shutdown();
+
+		long ticks = 0;
+		for (int i = 0; i < totals.length; i++) {
+			report(combinations.get(i), totals[i]);
+			ticks += totals[i].ticks;
+		}
+		System.out.println(String.format("%d rides in %.2f s: %.0f simulations/s, %.0f ticks/s",
+				rides, seconds, rides / seconds, ticks / seconds));
+	}
+
+	/**
+	 * Rides until the bike falls, stalls or runs out of ticks, and adds the outcome to totals
+	 */
+	private void ride(Params params, long seed, Totals totals) {
+		Simulation simulation = new Simulation(new ManualTimeSource(),
+				new ChunkedGroundGenerator(seed, params.terrainConfig()), params.physicsConfig());
+		simulation.setInputScript(new ThrottleScript(params.speed));
+		GameObject player = simulation.getPlayer();
+		Ground ground = simulation.getGround();
+
+		int outcome = OUTCOME_FINISHED;
+		int ticks = 0;
+		int airborneTicks = 0;
+		int stalledTicks = 0;
+		while (ticks < maxTicks) {
+			simulation.tick();
+			ticks++;
+
+			//Every tick run is counted, including the one the ride ends on
+			float y = player.getPositionY();
+			if (y > ground.getYPositionAt(player.getPositionX()) + AIRBORNE_HEIGHT) {
+				airborneTicks++;
+			}
+			if (y < FELL_BELOW_Y) {
+				outcome = OUTCOME_FELL;
+				break;
+			}
+			stalledTicks = (Math.abs(player.getVelocity().x) < STALLED_SPEED) ? stalledTicks + 1 : 0;
+			if (stalledTicks >= STALLED_TICKS) {
+				outcome = OUTCOME_STALLED;
+				break;
+			}
+		}
+		simulation.close();
+
+		totals.add(outcome, player.getPositionX(), ticks, airborneTicks);
+	}
+
+	private static Totals[] newTotals(int count) {
+		Totals[] totals = new Totals[count];
+		for (int i = 0; i < totals.length; i++) {
+			totals[i] = new Totals();
+		}
+		return totals;
+	}
+
+	private static void report(Params params, Totals totals) {
+		StringBuilder outcomes = new StringBuilder();
+		for (int i = 0; i < OUTCOME_NAMES.length; i++) {
+			outcomes.append(' ').append(OUTCOME_NAMES[i]).append('=').append(totals.outcomes[i]);
+		}
+		System.out.println(String.format("%s:%s distance mean=%.1f min=%.1f max=%.1f airborne=%.1f%%",
+				params, outcomes, totals.distance / totals.rides, totals.minDistance, totals.maxDistance,
+				100.0 * totals.airborneTicks / Math.max(totals.ticks, 1)));
+	}
+
+	private static float[] parseList(String list) {
+		String[] parts = list.split(",");
+		float[] values = new float[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			values[i] = Float.parseFloat(parts[i].trim());
+		}
+		return values;
+	}
+}
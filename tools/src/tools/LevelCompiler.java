@@ -0,0 +1,143 @@
+package tools;
+
+import game.LevelPack;
+import game.LevelPointsParser;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles level sources into the binary level pack read by game.LevelPack.
+ *
+ * Sources can be:
+ * - .sql seed files, e.g. assets/level_seed.sql. Points are taken from
+ *   "INSERT INTO level (level_number, points) VALUES (n, '...')" statements
+ *   and expanded into segments by LevelPointsParser, exactly as
+ *   LevelDbReader.readLevel does.
+ * - Text files like levels.txt: a "Level n:" line followed by C style float
+ *   literals, already listed as segments (pairs of x, y, z points).
+ *
+ * Sources are read in order and a level defined twice takes the later definition.
+ * The game's pack is assets/levels.bin.mp3; see game.LevelPackAsset for the name.
+ *
+ * Needs the classes from src (game.LevelPack, game.LevelPointsParser) on the classpath.
+ * Usage: LevelCompiler <output.bin> <source>...
+ * e.g.   LevelCompiler assets/levels.bin.mp3 assets/level_seed.sql levels.txt
+ */
+public class LevelCompiler {
+
+	private static final Pattern SQL_INSERT = Pattern.compile(
+			"INSERT\\s+INTO\\s+level\\s*\\(\\s*level_number\\s*,\\s*points\\s*\\)\\s*VALUES\\s*\\(\\s*(\\d+)\\s*,\\s*'([^']*)'\\s*\\)",
+			Pattern.CASE_INSENSITIVE);
+
+	//Level number -> vertices, in level number order
+	private final Map<Integer, float[]> levels = new TreeMap<Integer, float[]>();
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: LevelCompiler <output.bin> <source.sql|source.txt>...");
+			System.exit(1);
+		}
+
+		LevelCompiler compiler = new LevelCompiler();
+		for (int i = 1; i < args.length; i++) {
+			String source = readFile(new File(args[i]));
+			if (args[i].endsWith(".sql")) {
+				compiler.addSql(source, args[i]);
+			} else {
+				compiler.addText(source, args[i]);
+			}
+		}
+
+		byte[] pack = compiler.compile();
+		FileOutputStream out = new FileOutputStream(args[0]);
+		try {
+			out.write(pack);
+		} finally {
+			out.close();
+		}
+
+		for (Map.Entry<Integer, float[]> level : compiler.levels.entrySet()) {
+			System.out.println("Level " + level.getKey() + ": " + level.getValue().length / 3 + " vertices");
+		}
+		System.out.println("Wrote " + pack.length + " bytes to " + args[0]);
+	}
+
+	public void addSql(String sql, String sourceName) {
+		Matcher insert = SQL_INSERT.matcher(sql);
+		while (insert.find()) {
+			int levelNumber = Integer.parseInt(insert.group(1));
+			putLevel(levelNumber, LevelPointsParser.getGlPointsArrayFromString(insert.group(2)), sourceName);
+		}
+	}
+
+	public void addText(String text, String sourceName) {
+		for (Map.Entry<Integer, float[]> level : LevelPointsParser.parseLevelsText(text).entrySet()) {
+			putLevel(level.getKey(), level.getValue(), sourceName);
+		}
+	}
+
+	private void putLevel(int levelNumber, float[] vertices, String sourceName) {
+		if (vertices.length % 3 != 0) {
+			throw new IllegalArgumentException(sourceName + ": level " + levelNumber + " has a partial point");
+		}
+		if (levels.containsKey(levelNumber)) {
+			System.err.println("Warning: level " + levelNumber + " redefined by " + sourceName);
+		}
+		levels.put(levelNumber, vertices);
+	}
+
+	/**
+	 * @return The level pack file
+	 */
+	public byte[] compile() {
+		int dataStart = LevelPack.HEADER_BYTES + levels.size() * LevelPack.INDEX_ENTRY_BYTES;
+		int size = dataStart;
+		for (float[] vertices : levels.values()) {
+			size += vertices.length * 4;
+		}
+
+		ByteBuffer pack = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		pack.putInt(LevelPack.MAGIC);
+		pack.putInt(LevelPack.VERSION);
+		pack.putInt(levels.size());
+
+		int offset = dataStart;
+		for (Map.Entry<Integer, float[]> level : levels.entrySet()) {
+			pack.putInt(level.getKey());
+			pack.putInt(offset);
+			pack.putInt(level.getValue().length);
+			offset += level.getValue().length * 4;
+		}
+		for (float[] vertices : levels.values()) {
+			for (float f : vertices) {
+				pack.putFloat(f);
+			}
+		}
+		return pack.array();
+	}
+
+	private static String readFile(File file) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			StringBuilder sb = new StringBuilder();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				sb.append(line).append('\n');
+			}
+			return sb.toString();
+		} finally {
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package tools;
+
+import game.ChunkedGroundGenerator;
+import game.InputLog;
+import game.Simulation;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import objects.GameObject;
+import core.ManualTimeSource;
+
+/**
+ * Rides a recorded ride again, headless and as fast as the CPU allows, by
+ * feeding its input log back through a fresh Simulation on the same terrain.
+ * Checks the player ends up where they did in the recording, and reports how
+ * fast the ride was simulated, so a player's ride can be kept as a physics
+ * and performance regression case.
+ *
+ * Rides are recorded by the game into files/last_ride.inputlog (see
+ * Scene.RIDE_LOG_FILE_NAME), which can be fetched with
+ * adb shell run-as game.bikerbob cat files/last_ride.inputlog > ride.inputlog
+ *
+ * The game builds its terrain on a TerrainProducer thread and the replay
+ * generates it in line, from the same seed. The chunks are identical; only
+ * when they're added differs, and that is always well ahead of the player.
+ *
+ * Needs the classes from src (game, objects, physics, core) on the classpath.
+ * Usage: ReplayPlayer <ride.inputlog> [repeats]
+ * Exits with status 1 if the replay doesn't match the recording.
+ */
+public class ReplayPlayer {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: ReplayPlayer <ride.inputlog> [repeats]");
+			System.exit(1);
+		}
+		int repeats = (args.length > 1) ? Integer.parseInt(args[1]) : 1;
+
+		InputLog log;
+		InputStream in = new FileInputStream(new File(args[0]));
+		try {
+			log = InputLog.read(in);
+		} finally {
+			in.close();
+		}
+		if (log.getTicksPerSecond() != Simulation.TICKS_PER_SECOND) {
+			System.err.println("Recorded at " + log.getTicksPerSecond() + " ticks/s but the simulation runs at "
+					+ Simulation.TICKS_PER_SECOND + "; the replay won't match");
+		}
+		System.out.println(args[0] + ": seed " + log.getSeed() + ", " + log.getEventCount() + " events over "
+				+ log.getEndTick() + " ticks (" + new File(args[0]).length() + " bytes)");
+
+		boolean matched = true;
+		for (int i = 0; i < repeats; i++) {
+			long startNanos = System.nanoTime();
+			Simulation simulation = replay(log);
+			double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+			GameObject player = simulation.getPlayer();
+			boolean match = player.getPositionX() == log.getEndX() && player.getPositionY() == log.getEndY();
+			matched &= match;
+			System.out.println(String.format("Replay %d: %.0f ticks/s, ended at (%s, %s), %s", i + 1,
+					log.getEndTick() / seconds, player.getPositionX(), player.getPositionY(),
+					match ? "matches the recording" : "recording ended at (" + log.getEndX() + ", " + log.getEndY() + ")"));
+		}
+		System.exit(matched ? 0 : 1);
+	}
+
+	/**
+	 * Runs the whole ride
+	 * @return The simulation, at the recording's last tick
+	 */
+	public static Simulation replay(InputLog log) {
+		Simulation simulation = new Simulation(new ManualTimeSource(), new ChunkedGroundGenerator(log.getSeed()));
+		log.rewind();
+		for (long tick = 0; tick < log.getEndTick(); tick++) {
+			log.replayTick(tick, simulation.getInputQueue());
+			simulation.tick();
+		}
+		simulation.close();
+		return simulation;
+	}
+}